@@ -0,0 +1,150 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory inverted index from normalized author name to ISBNs, maintained
+ * from book change events. Supports exact and prefix lookups with offset
+ * pagination; results are ordered by author key, then ISBN.
+ * <p>
+ * Updates are serialized; lookups run concurrently with them and may see a
+ * change half-applied, which at worst yields a stale entry for one request.
+ */
+public class AuthorIndex implements BookChangeListener {
+
+	/**
+	 * Indexed state of a single book.
+	 */
+	private static class Entry {
+		final long version;
+		final Set<String> authorKeys;
+
+		Entry(long version, Set<String> authorKeys) {
+			this.version = version;
+			this.authorKeys = authorKeys;
+		}
+	}
+
+	private final ConcurrentSkipListMap<String, NavigableSet<String>> byAuthor = new ConcurrentSkipListMap<>();
+	private final Map<String, Entry> byIsbn = new ConcurrentHashMap<>();
+
+	@Override
+	public synchronized void bookSaved(Book book) {
+		String isbn = book.getISBN();
+		long version = book.getVersion() != null ? book.getVersion() : 0L;
+		Entry previous = byIsbn.get(isbn);
+		if (previous != null && previous.version > version) {
+			// A newer state has been indexed already
+			return;
+		}
+
+		Set<String> authorKeys = new LinkedHashSet<>();
+		for (String author : book.getAuthor()) {
+			String key = TextKeys.normalize(author);
+			if (!key.isEmpty()) {
+				authorKeys.add(key);
+			}
+		}
+		if (previous != null) {
+			for (String key : previous.authorKeys) {
+				if (!authorKeys.contains(key)) {
+					unlink(key, isbn);
+				}
+			}
+		}
+		for (String key : authorKeys) {
+			byAuthor.computeIfAbsent(key, k -> new ConcurrentSkipListSet<String>()).add(isbn);
+		}
+		byIsbn.put(isbn, new Entry(version, authorKeys));
+	}
+
+	@Override
+	public synchronized void bookRemoved(String isbn) {
+		Entry previous = byIsbn.remove(isbn);
+		if (previous != null) {
+			for (String key : previous.authorKeys) {
+				unlink(key, isbn);
+			}
+		}
+	}
+
+	private void unlink(String key, String isbn) {
+		NavigableSet<String> isbns = byAuthor.get(key);
+		if (isbns != null) {
+			isbns.remove(isbn);
+			if (isbns.isEmpty()) {
+				byAuthor.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Find books by an author's full name, ignoring case, accents and punctuation.
+	 * @param name author name
+	 * @param offset number of matches to skip
+	 * @param limit maximum number of matches to return
+	 * @return ISBNs in ascending order
+	 */
+	public List<String> findExact(String name, int offset, int limit) {
+		NavigableSet<String> isbns = byAuthor.get(TextKeys.normalize(name));
+		if (isbns == null) {
+			return Collections.emptyList();
+		}
+		return page(isbns, offset, limit);
+	}
+
+	/**
+	 * Find books by all authors whose normalized name starts with the given prefix.
+	 * @param prefix start of an author name
+	 * @param offset number of distinct matches to skip
+	 * @param limit maximum number of matches to return
+	 * @return ISBNs, ordered by author name and then ISBN, without duplicates
+	 */
+	public List<String> findPrefix(String prefix, int offset, int limit) {
+		String key = TextKeys.normalize(prefix);
+		if (key.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Set<String> seen = new LinkedHashSet<>();
+		for (NavigableSet<String> isbns : byAuthor.subMap(key, key + Character.MAX_VALUE).values()) {
+			for (String isbn : isbns) {
+				seen.add(isbn);
+				if (seen.size() >= offset + limit) {
+					return page(seen, offset, limit);
+				}
+			}
+		}
+		return page(seen, offset, limit);
+	}
+
+	/**
+	 * @return number of indexed books
+	 */
+	public int size() {
+		return byIsbn.size();
+	}
+
+	private static List<String> page(Iterable<String> isbns, int offset, int limit) {
+		List<String> page = new ArrayList<>(Math.min(limit, 64));
+		int index = 0;
+		for (String isbn : isbns) {
+			if (index++ < offset) {
+				continue;
+			}
+			if (page.size() >= limit) {
+				break;
+			}
+			page.add(isbn);
+		}
+		return page;
+	}
+}
@@ -5,7 +5,13 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -30,6 +36,23 @@ public class Book {
 	static final String ISBN = "book:isbn";
 	static final String AUTHOR = "book:author";
 	static final String TITLE = "book:title";
+	static final String VERSION = "book:version";
+	
+	/**
+	 * JSON field names, as produced by the getters, mapped to the JCR properties backing them.
+	 */
+	static final Map<String, String> FIELD_PROPERTIES;
+	static {
+		Map<String, String> fields = new LinkedHashMap<>();
+		fields.put("isbn", ISBN);
+		fields.put("title", TITLE);
+		fields.put("author", AUTHOR);
+		fields.put("publicationDate", PUBLICATION_DATE);
+		fields.put("firstPublicationDate", FIRST_PUBLICATION_DATE);
+		fields.put("shortDescription", SHORT_DESCRIPTION);
+		fields.put("version", VERSION);
+		FIELD_PROPERTIES = Collections.unmodifiableMap(fields);
+	}
 	
 	/**
 	 * Sample text for testing.
@@ -66,6 +89,29 @@ public class Book {
 	 */
 	protected String shortDescription;
 	
+	/**
+	 * Number of times this book has been saved. When loaded, the stored version;
+	 * when saving, the version the stored book is expected to have, or null to
+	 * overwrite unconditionally.
+	 */
+	protected Long version;
+	
+	/**
+	 * Node this book was partially loaded from, used to read the remaining
+	 * properties on first access
+	 */
+	private Node lazyNode;
+	
+	/**
+	 * JCR properties that have not been read from {@link #lazyNode} yet
+	 */
+	private Set<String> unloaded = Collections.emptySet();
+	
+	/**
+	 * Identifier of the node this book was loaded from, if any
+	 */
+	private String nodeIdentifier;
+	
 	//======================================================================
 	// Non-trivial implementation logic
 	//======================================================================
@@ -73,9 +119,11 @@ public class Book {
 	/**
 	 * Create three sample Book objects and save them. To be used for demo purposes only.
 	 * @param booksRoot JCR node representing the root of the books content
+	 * @return the ISBNs of the sample books
 	 * @throws RepositoryException
 	 */
-	public static void createSampleBooks(Node booksRoot) throws RepositoryException {
+	public static List<String> createSampleBooks(Node booksRoot) throws RepositoryException {
+		List<String> isbns = new ArrayList<>(3);
 		Book book = new Book();
 	    book.setISBN("978-0399226908");
 	    book.setTitle("The Very Hungry Caterpillar");
@@ -85,6 +133,7 @@ public class Book {
 	    book.setPublicationDate(date);
 	    book.setShortDescription("THE all-time classic picture book, from generation to generation, sold somewhere in the world every 30 seconds! Have you shared it with a child or grandchild in your life?");
 	    book.save(booksRoot);
+	    isbns.add(book.getISBN());
 	    
 	    book.setISBN("978-0803736801");
 	    book.setTitle("Dragons Love Tacos");
@@ -94,6 +143,7 @@ public class Book {
 	    book.setPublicationDate(date);
 	    book.setShortDescription(Book.DRAGONS_DESC);
 	    book.save(booksRoot);
+	    isbns.add(book.getISBN());
 	    
 	    book.setISBN("978-0679805274");
 	    book.setTitle("Oh, The Places You'll Go!");
@@ -103,6 +153,8 @@ public class Book {
 	    book.setPublicationDate(date);
 	    book.setShortDescription("Dr. Seuss’s wonderfully wise Oh, the Places You’ll Go! is the perfect send-off for grads—from nursery school, high school, college, and beyond! From soaring to high heights and seeing great sights to being left in a Lurch on a prickle-ly perch, Dr. Seuss addresses life’s ups and downs with his trademark humorous verse and illustrations, while encouraging readers to find the success that lies within. In a starred review, Booklist notes, “Seuss’s message is simple but never sappy: life may be a ‘Great Balancing Act,’ but through it all ‘There’s fun to be done.’” A perennial favorite and a perfect gift for anyone starting a new phase in their life!");
 	    book.save(booksRoot);
+	    isbns.add(book.getISBN());
+	    return isbns;
 	}
 	
 	/**
@@ -113,20 +165,44 @@ public class Book {
 	 * @return a Collection of Book objects representing all stored books, in no particular order
 	 */
 	public static Collection<Book> loadAll(Node booksRoot) throws RepositoryException {
+		return loadAll(booksRoot, FIELD_PROPERTIES.values());
+	}
+	
+	/**
+	 * Load all Book instances stored here, reading only the given properties
+	 * up front.
+	 * @see #loadAll(Node)
+	 * @param booksRoot JCR node representing the root of the books content
+	 * @param properties JCR properties to read eagerly; others are loaded lazily
+	 * @return a Collection of Book objects representing all stored books, in no particular order
+	 */
+	public static Collection<Book> loadAll(Node booksRoot, Collection<String> properties) throws RepositoryException {
 		// Straightforward iterate-and-accumulate
 		// TODO: Implement output limits via sorting/paging
 		ArrayList<Book> books = new ArrayList<>();
 		for (NodeIterator folders = booksRoot.getNodes(); folders.hasNext();) {
-			Node folder = folders.nextNode();
-			for (NodeIterator bookNodes = folder.getNodes(); bookNodes.hasNext();) {
-				Node bookNode = bookNodes.nextNode();
-				Book book = new Book(bookNode);
-				books.add(book);
-			}
+			loadShard(folders.nextNode(), books, properties);
 		}
 		return books;
 	}
 	
+	/**
+	 * Load all Book instances stored in a single shard folder.
+	 * @see ShardTraversal#loadAll(Node, Collection)
+	 * @param folder a sharded folder node, as created by {@link #getFolder(Node)}
+	 * @param books the collection to which the loaded books are added
+	 * @param properties JCR properties to read eagerly; others are loaded lazily
+	 * @throws RepositoryException
+	 */
+	static void loadShard(Node folder, Collection<Book> books, Collection<String> properties) throws RepositoryException {
+		for (NodeIterator bookNodes = folder.getNodes(); bookNodes.hasNext();) {
+			Node bookNode = bookNodes.nextNode();
+			Book book = new Book();
+			book.load(bookNode, properties);
+			books.add(book);
+		}
+	}
+	
 	/**
 	 * Load a Book object based on an ISBN key. This method provides no caching
 	 * or uniqueness guarantees.
@@ -136,19 +212,36 @@ public class Book {
 	 * @throws RepositoryException
 	 */
 	public static Book loadByISBN(Node booksRoot, String isbn) throws RepositoryException {
+		return loadByISBN(booksRoot, isbn, FIELD_PROPERTIES.values());
+	}
+	
+	/**
+	 * Load a Book object based on an ISBN key, reading only the given
+	 * properties up front.
+	 * @see #loadByISBN(Node, String)
+	 * @param booksRoot JCR node representing the root of the books content
+	 * @param isbn ISBN for the desired Book
+	 * @param properties JCR properties to read eagerly; others are loaded lazily
+	 * @return a Book instance or null, if this system doesn't know the ISBN
+	 * @throws RepositoryException
+	 */
+	public static Book loadByISBN(Node booksRoot, String isbn, Collection<String> properties) throws RepositoryException {
 		// Sanitize ISBN input before searching
 		isbn = sanitizeISBN(isbn);
-		Node folder = findFolder(booksRoot, isbn);
-		
-		// Short-circuit data loading if no appropriate node exists
-		if (folder == null || !folder.hasNode(isbn)) {
-			return null;
+		Node bookNode;
+		try (RequestTrace.Span span = RequestTrace.span(RequestTrace.LOOKUP)) {
+			Node folder = findFolder(booksRoot, isbn);
+			
+			// Short-circuit data loading if no appropriate node exists
+			if (folder == null || !folder.hasNode(isbn)) {
+				return null;
+			}
+			bookNode = folder.getNode(isbn);
 		}
-		Node bookNode = folder.getNode(isbn);
 		Book book = new Book();
 		
 		// Peform the actual data copying
-		book.load(bookNode);
+		book.load(bookNode, properties);
 		
 		return book;
 	}
@@ -191,6 +284,21 @@ public class Book {
 		return isbn.replaceAll("\\D", "");
 	}
 	
+	/**
+	 * Convert an ISBN into a numeric key for primitive lookup structures. Only valid
+	 * 13-digit ISBNs have a key, as leading zeros would otherwise map different
+	 * ISBNs, such as 09780399226908 and 9780399226908, to the same key.
+	 * @param isbn ISBN in any notation
+	 * @return the ISBN digits as a number, or 0 if the ISBN doesn't have exactly 13 digits
+	 */
+	static long getISBNKey(String isbn) {
+		String digits = sanitizeISBN(isbn);
+		if (digits.length() != 13) {
+			return 0;
+		}
+		return Long.parseLong(digits);
+	}
+	
 	/**
 	 * Default JavaBean zero-arg constructor.
 	 */
@@ -210,13 +318,57 @@ public class Book {
 	 * @throws RepositoryException
 	 */
 	protected void load(Node bookNode) throws RepositoryException {
+		load(bookNode, FIELD_PROPERTIES.values());
+	}
+	
+	/**
+	 * Load data for a Book object from a JCR node representing the book,
+	 * reading only the given properties now. The remaining properties are
+	 * read from the node when their getter is first called, which requires
+	 * the node's session to still be live at that point.
+	 * @param bookNode JCR node representing this book
+	 * @param properties JCR properties to read eagerly; the ISBN is always read
+	 * @throws RepositoryException
+	 */
+	protected void load(Node bookNode, Collection<String> properties) throws RepositoryException {
+		RequestTrace.count(RequestTrace.NODES, 1);
+		try (RequestTrace.Span span = RequestTrace.span(RequestTrace.LOAD)) {
+			loadProperties(bookNode, properties);
+		}
+	}
+
+	private void loadProperties(Node bookNode, Collection<String> properties) throws RepositoryException {
 		// Copy properties
 		this.isbn = bookNode.getProperty(ISBN).getString();
+		this.version = getStoredVersion(bookNode);
+		this.nodeIdentifier = bookNode.getIdentifier();
 		
-		if (bookNode.hasProperty(TITLE)) {
+		Set<String> remaining = new HashSet<>(FIELD_PROPERTIES.values());
+		remaining.remove(ISBN);
+		remaining.remove(VERSION);
+		for (String property : properties) {
+			if (remaining.remove(property)) {
+				loadProperty(bookNode, property);
+			}
+		}
+		this.lazyNode = remaining.isEmpty() ? null : bookNode;
+		this.unloaded = remaining;
+	}
+	
+	/**
+	 * Copy a single property from the book node, if present.
+	 * @param bookNode JCR node representing this book
+	 * @param property one of the JCR property name constants
+	 * @throws RepositoryException
+	 */
+	private void loadProperty(Node bookNode, String property) throws RepositoryException {
+		if (!bookNode.hasProperty(property)) {
+			return;
+		}
+		if (TITLE.equals(property)) {
 			this.title = bookNode.getProperty(TITLE).getString();
 		}
-		if (bookNode.hasProperty(AUTHOR)) {
+		else if (AUTHOR.equals(property)) {
 			Value[] authors = bookNode.getProperty(AUTHOR).getValues();
 			List<String> authorList = new ArrayList<String>(authors.length);
 			for (Value a: authors) {
@@ -224,40 +376,155 @@ public class Book {
 			}
 			this.author = authorList;
 		}
-		if (bookNode.hasProperty(PUBLICATION_DATE)) {
+		else if (PUBLICATION_DATE.equals(property)) {
 			this.publicationDate = bookNode.getProperty(PUBLICATION_DATE).getDate();
 		}
-		if (bookNode.hasProperty(FIRST_PUBLICATION_DATE)) {
+		else if (FIRST_PUBLICATION_DATE.equals(property)) {
 			this.firstPublicationDate = bookNode.getProperty(FIRST_PUBLICATION_DATE).getDate();
 		}
-		if (bookNode.hasProperty(SHORT_DESCRIPTION)) {
+		else if (SHORT_DESCRIPTION.equals(property)) {
 			this.shortDescription = bookNode.getProperty(SHORT_DESCRIPTION).getString();
 		}
 	}
 	
+	/**
+	 * Read a property that was skipped by a projected {@link #load(Node, Collection)}.
+	 * @param property one of the JCR property name constants
+	 */
+	private void ensureLoaded(String property) {
+		if (unloaded.remove(property)) {
+			try {
+				loadProperty(lazyNode, property);
+			}
+			catch (RepositoryException e) {
+				throw new IllegalStateException("Unable to load " + property + " for ISBN " + isbn, e);
+			}
+			if (unloaded.isEmpty()) {
+				lazyNode = null;
+			}
+		}
+	}
+	
+	/**
+	 * Stop lazy loading, e.g. before the session this book was loaded from is
+	 * closed. Properties that were not read yet remain empty.
+	 */
+	void detach() {
+		lazyNode = null;
+		unloaded = Collections.emptySet();
+	}
+	
+	/**
+	 * Mark a property as explicitly set, so a later getter call won't overwrite it lazily.
+	 */
+	private void loaded(String property) {
+		unloaded.remove(property);
+	}
+	
+	/**
+	 * Parse a comma-separated list of JSON field names, as accepted by the
+	 * fields= request parameter.
+	 * @param fields field list, e.g. "isbn,title"; may be null
+	 * @return the requested field names in request order, or null if all fields are wanted
+	 * @throws IllegalArgumentException if an unknown field name is requested
+	 */
+	static Set<String> parseFields(String fields) {
+		if (StringUtils.isBlank(fields)) {
+			return null;
+		}
+		Set<String> result = new LinkedHashSet<>();
+		for (String field : fields.split(",")) {
+			field = field.trim();
+			if (field.isEmpty()) {
+				continue;
+			}
+			if (!FIELD_PROPERTIES.containsKey(field)) {
+				throw new IllegalArgumentException("Unknown field: " + field);
+			}
+			result.add(field);
+		}
+		return result.isEmpty() ? null : result;
+	}
+	
+	/**
+	 * Map JSON field names to the JCR properties that must be read for them.
+	 * @param fields field names as returned by {@link #parseFields(String)}, or null for all
+	 * @return the backing JCR property names
+	 */
+	static Collection<String> propertiesFor(Set<String> fields) {
+		if (fields == null) {
+			return FIELD_PROPERTIES.values();
+		}
+		List<String> properties = new ArrayList<>(fields.size());
+		for (String field : fields) {
+			properties.add(FIELD_PROPERTIES.get(field));
+		}
+		return properties;
+	}
+	
+	/**
+	 * Build a projected representation of this book that serializes to only
+	 * the given fields.
+	 * @param fields field names as returned by {@link #parseFields(String)}
+	 * @return field name to value map, in the requested order
+	 */
+	public Map<String, Object> project(Set<String> fields) {
+		Map<String, Object> projection = new LinkedHashMap<>();
+		for (String field : fields) {
+			switch (field) {
+			case "isbn":
+				projection.put(field, getISBN());
+				break;
+			case "title":
+				projection.put(field, getTitle());
+				break;
+			case "author":
+				projection.put(field, getAuthor());
+				break;
+			case "publicationDate":
+				projection.put(field, getPublicationDate());
+				break;
+			case "firstPublicationDate":
+				projection.put(field, getFirstPublicationDate());
+				break;
+			case "shortDescription":
+				projection.put(field, getShortDescription());
+				break;
+			case "version":
+				projection.put(field, getVersion());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown field: " + field);
+			}
+		}
+		return projection;
+	}
+	
 	/**
 	 * Create or update a JCR node representing this book, using the ISBN as
 	 * primary identifier. This method updates Nodes but does not save the 
-	 * session.
+	 * session. If a version is set, the stored book must have that version
+	 * (0 meaning the book must not exist yet); the stored version is
+	 * incremented on every save.
 	 * @param booksRoot JCR node representing the root of the books content
+	 * @throws VersionConflictException if the stored version differs from the expected one;
+	 *         the session then has pending changes that should be discarded
 	 */
 	public void save(Node booksRoot) throws RepositoryException {
-		// The only required field for a book in this system is the ISBN.
-		if (StringUtils.isBlank(isbn)) {
-			throw new IllegalStateException("ISBN field is required to save a book!");
-		}
-		
-		// Minimal validation for ISBN value -- must be 13 digits.
-		if (isbn.length() != 13) {
-			throw new IllegalStateException("ISBN field must be 13 digits!");
-		}
-		
-		// TODO: More validation checks...
+		validate();
 
 		// Shard storage of books by ISBN
 		Node folder = getFolder(booksRoot);
 		Node bookNode = getBookNode(folder);
 		
+		// Optimistic concurrency check. Concurrent writers that both pass it
+		// are caught by the repository at session save time.
+		long storedVersion = getStoredVersion(bookNode);
+		if (version != null && version.longValue() != storedVersion) {
+			throw new VersionConflictException(isbn, version, storedVersion);
+		}
+		bookNode.setProperty(VERSION, storedVersion + 1);
+		
 		// Store book data as direct properties
 		// TODO: Perform field-by-field change detection to suppress redundant change events
 		bookNode.setProperty(ISBN, isbn);
@@ -273,11 +540,64 @@ public class Book {
 		if (firstPublicationDate != null) {
 			bookNode.setProperty(FIRST_PUBLICATION_DATE, firstPublicationDate);
 		}
-		if (StringUtils.isNotBlank(title)) {
+		if (StringUtils.isNotBlank(shortDescription)) {
 			bookNode.setProperty(SHORT_DESCRIPTION, shortDescription);
 		}
 	}
 
+	/**
+	 * Check that this book can be saved.
+	 * @throws IllegalStateException if a required field is missing or invalid
+	 */
+	public void validate() {
+		// The only required field for a book in this system is the ISBN.
+		if (StringUtils.isBlank(isbn)) {
+			throw new IllegalStateException("ISBN field is required to save a book!");
+		}
+		
+		// Minimal validation for ISBN value -- must be 13 digits.
+		if (isbn.length() != 13) {
+			throw new IllegalStateException("ISBN field must be 13 digits!");
+		}
+		
+		// TODO: More validation checks...
+	}
+
+	/**
+	 * Apply a later update of the same book on top of this one, as consecutive saves would:
+	 * only the fields that {@link #save(Node)} would write replace those of this book. The
+	 * expected version is the one of this update, if it has one.
+	 * @param later a later update of the same ISBN
+	 */
+	void merge(Book later) {
+		if (StringUtils.isNotBlank(later.title)) {
+			title = later.title;
+		}
+		if (!later.author.isEmpty()) {
+			author = later.author;
+		}
+		if (later.publicationDate != null) {
+			publicationDate = later.publicationDate;
+		}
+		if (later.firstPublicationDate != null) {
+			firstPublicationDate = later.firstPublicationDate;
+		}
+		if (StringUtils.isNotBlank(later.shortDescription)) {
+			shortDescription = later.shortDescription;
+		}
+		if (version == null) {
+			version = later.version;
+		}
+	}
+
+	/**
+	 * @param bookNode JCR node representing a book
+	 * @return the stored version of the book, 0 for books saved before versioning existed
+	 */
+	static long getStoredVersion(Node bookNode) throws RepositoryException {
+		return bookNode.hasProperty(VERSION) ? bookNode.getProperty(VERSION).getLong() : 0L;
+	}
+
 	/**
 	 * Remove this book from the repository.
 	 * @see #removeByISBN(Node, String)
@@ -354,14 +674,17 @@ public class Book {
 	//======================================================================
 	
 	public String getTitle() {
+		ensureLoaded(TITLE);
 		return title;
 	}
 
 	public void setTitle(String title) {
+		loaded(TITLE);
 		this.title = title;
 	}
 
 	public List<String> getAuthor() {
+		ensureLoaded(AUTHOR);
 		return author;
 	}
 
@@ -371,10 +694,12 @@ public class Book {
 		if (author == null) {
 			author = Collections.emptyList();
 		}
+		loaded(AUTHOR);
 		this.author = author;
 	}
 
 	public void setAuthor(String... author) {
+		loaded(AUTHOR);
 		this.author = Arrays.asList(author);
 	}
 
@@ -387,29 +712,88 @@ public class Book {
 	}
 
 	public Calendar getPublicationDate() {
+		ensureLoaded(PUBLICATION_DATE);
 		return publicationDate;
 	}
 
 	public void setPublicationDate(Calendar publicationDate) {
+		loaded(PUBLICATION_DATE);
 		this.publicationDate = publicationDate;
 	}
 
 	public Calendar getFirstPublicationDate() {
+		ensureLoaded(FIRST_PUBLICATION_DATE);
 		return firstPublicationDate;
 	}
 
 	public void setFirstPublicationDate(Calendar firstPublicationDate) {
+		loaded(FIRST_PUBLICATION_DATE);
 		this.firstPublicationDate = firstPublicationDate;
 	}
 
 	public String getShortDescription() {
+		ensureLoaded(SHORT_DESCRIPTION);
 		return shortDescription;
 	}
 
 	public void setShortDescription(String shortDescription) {
+		loaded(SHORT_DESCRIPTION);
 		this.shortDescription = shortDescription;
 	}
 
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Not serialized, as it is package-private. A first edition often has only its
+	 * publication date, which then is the first publication of the work.
+	 * @return key grouping the editions of this book's work, or null if it has no title
+	 */
+	String getWorkKey() {
+		Calendar firstPublished = getFirstPublicationDate() != null ? getFirstPublicationDate() : getPublicationDate();
+		return getWorkKey(getTitle(), getAuthor(), firstPublished);
+	}
+
+	/**
+	 * Get the key grouping the editions of a work: the normalized title, the normalized
+	 * authors in name order and the year of first publication, e.g. "the very hungry
+	 * caterpillar|eric carle|1969".
+	 * @param title title of the edition
+	 * @param authors authors of the edition, may be null
+	 * @param firstPublicationDate first publication of the work, may be null
+	 * @return the work key, or null if there is no title to group by
+	 */
+	static String getWorkKey(String title, Collection<String> authors, Calendar firstPublicationDate) {
+		String titleKey = TextKeys.normalize(title);
+		if (titleKey.isEmpty()) {
+			return null;
+		}
+		Set<String> authorKeys = new TreeSet<>();
+		if (authors != null) {
+			for (String author : authors) {
+				String authorKey = TextKeys.normalize(author);
+				if (!authorKey.isEmpty()) {
+					authorKeys.add(authorKey);
+				}
+			}
+		}
+		String year = firstPublicationDate != null ? String.valueOf(firstPublicationDate.get(Calendar.YEAR)) : "";
+		return titleKey + "|" + String.join(";", authorKeys) + "|" + year;
+	}
+
+	/**
+	 * Not serialized, as it is package-private.
+	 * @return identifier of the node this book was loaded from, or null
+	 */
+	String getNodeIdentifier() {
+		return nodeIdentifier;
+	}
+
 	/**
 	 * Simple auto-generated toString implementation.
 	 */
@@ -0,0 +1,225 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.observation.ObservationManager;
+
+import org.apache.jackrabbit.api.observation.JackrabbitEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps in-memory book indexes in sync with the repository. JCR observation
+ * events below /books are reduced to the set of affected books, and the
+ * current state of each of those books is published to the registered
+ * {@link BookChangeListener}s. Because the current state is re-read instead
+ * of interpreting individual events, late or duplicate events are harmless.
+ * <p>
+ * Writers in this module also publish their changes directly via
+ * {@link #refresh(Node, Collection)}, so indexes reflect a local write as soon
+ * as the request that made it returns.
+ * <p>
+ * In a cluster, writes of other nodes arrive as external events once this node
+ * has synchronized with the cluster journal, and are published the same way.
+ * Events are delivered asynchronously after that synchronization, so in
+ * between a cached payload can still be served in its previous version while
+ * the node's sessions already read the new one. Loads that miss the cache are
+ * never older than the node's view of the repository.
+ */
+public class BookChangeDispatcher implements EventListener {
+
+	private static final Logger log = LoggerFactory.getLogger(BookChangeDispatcher.class);
+
+	private static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.PROPERTY_ADDED
+			| Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+	private final BooksModule module;
+	private final List<BookChangeListener> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong externalEvents = new AtomicLong();
+
+	/**
+	 * Session for reading changed books, only used from the observation thread
+	 */
+	private Session session;
+
+	public BookChangeDispatcher(BooksModule module) {
+		this.module = module;
+	}
+
+	/**
+	 * Dispatcher that reads changed books with the given session but is not
+	 * registered for observation, so only events passed to {@link #onEvent} are
+	 * published. Not to be {@link #stop() stopped}, the session stays the caller's.
+	 */
+	BookChangeDispatcher(BooksModule module, Session session) {
+		this.module = module;
+		this.session = session;
+	}
+
+	public void addListener(BookChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Start listening for changes below /books.
+	 * @throws RepositoryException
+	 */
+	public void start() throws RepositoryException {
+		session = module.loginSystemSession();
+		ObservationManager observationManager = session.getWorkspace().getObservationManager();
+		observationManager.addEventListener(this, EVENT_TYPES, BooksModule.BOOKS_PATH, true, null, null, false);
+	}
+
+	/**
+	 * Stop listening and release the session.
+	 */
+	public void stop() {
+		if (session == null) {
+			return;
+		}
+		try {
+			session.getWorkspace().getObservationManager().removeEventListener(this);
+		}
+		catch (RepositoryException e) {
+			log.warn("Unable to remove books event listener", e);
+		}
+		session.logout();
+		session = null;
+	}
+
+	/**
+	 * Publish every stored book to the listeners, e.g. to populate the indexes at startup.
+	 * @param traversal traversal used to read all shards in parallel
+	 * @param booksRoot JCR node representing the root of the books content
+	 * @throws RepositoryException
+	 */
+	public void publishAll(ShardTraversal traversal, Node booksRoot) throws RepositoryException {
+		traversal.visitAll(booksRoot, folder -> {
+			List<Book> books = new ArrayList<>();
+			Book.loadShard(folder, books, Book.FIELD_PROPERTIES.values());
+			for (Book book : books) {
+				publishSaved(book);
+			}
+		});
+	}
+
+	/**
+	 * Publish the current state of the given books, as seen by the session of booksRoot.
+	 * @param booksRoot JCR node representing the root of the books content
+	 * @param isbns ISBNs of books that were just saved or removed
+	 * @throws RepositoryException
+	 */
+	public void refresh(Node booksRoot, Collection<String> isbns) throws RepositoryException {
+		for (String isbn : isbns) {
+			Book book = Book.loadByISBN(booksRoot, isbn);
+			if (book != null) {
+				publishSaved(book);
+			}
+			else {
+				publishRemoved(Book.sanitizeISBN(isbn));
+			}
+		}
+	}
+
+	@Override
+	public void onEvent(EventIterator events) {
+		// Several events usually concern the same book, so collect the book paths first
+		Set<String> bookPaths = new LinkedHashSet<>();
+		int external = 0;
+		while (events.hasNext()) {
+			try {
+				Event event = events.nextEvent();
+				if (event instanceof JackrabbitEvent && ((JackrabbitEvent) event).isExternal()) {
+					external++;
+				}
+				String bookPath = getBookPath(event.getPath());
+				if (bookPath != null) {
+					bookPaths.add(bookPath);
+				}
+			}
+			catch (RepositoryException e) {
+				log.warn("Unable to read books event", e);
+			}
+		}
+		if (external > 0) {
+			externalEvents.addAndGet(external);
+			log.debug("Received {} books events from other cluster nodes", external);
+		}
+
+		for (String bookPath : bookPaths) {
+			try {
+				if (session.nodeExists(bookPath)) {
+					Node bookNode = session.getNode(bookPath);
+					if (bookNode.hasProperty(Book.ISBN)) {
+						publishSaved(new Book(bookNode));
+					}
+				}
+				else {
+					publishRemoved(bookPath.substring(bookPath.lastIndexOf('/') + 1));
+				}
+			}
+			catch (RepositoryException e) {
+				log.warn("Unable to process change of " + bookPath, e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of events received for changes made by other cluster nodes
+	 */
+	public long getExternalEvents() {
+		return externalEvents.get();
+	}
+
+	/**
+	 * Reduce an event path to the path of the book node it concerns.
+	 * @param path path of a node or property below /books
+	 * @return /books/{folder}/{isbn}, or null for events on /books itself or a shard folder
+	 */
+	static String getBookPath(String path) {
+		String prefix = BooksModule.BOOKS_PATH + "/";
+		if (!path.startsWith(prefix)) {
+			return null;
+		}
+		int folderEnd = path.indexOf('/', prefix.length());
+		if (folderEnd < 0) {
+			return null;
+		}
+		int bookEnd = path.indexOf('/', folderEnd + 1);
+		return bookEnd < 0 ? path : path.substring(0, bookEnd);
+	}
+
+	private void publishSaved(Book book) {
+		for (BookChangeListener listener : listeners) {
+			try {
+				listener.bookSaved(book);
+			}
+			catch (RuntimeException e) {
+				log.error("Book change listener failed for ISBN " + book.getISBN(), e);
+			}
+		}
+	}
+
+	private void publishRemoved(String isbn) {
+		for (BookChangeListener listener : listeners) {
+			try {
+				listener.bookRemoved(isbn);
+			}
+			catch (RuntimeException e) {
+				log.error("Book change listener failed for ISBN " + isbn, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package org.example.assessment;
+
+/**
+ * Receiver of book changes, as published by {@link BookChangeDispatcher}. The
+ * same change may be delivered more than once (for a local write and again
+ * for its observation event), and calls may arrive concurrently from several
+ * threads, so implementations must be idempotent and thread-safe.
+ */
+public interface BookChangeListener {
+
+	/**
+	 * A book was created or updated.
+	 * @param book the fully loaded, current state of the book
+	 */
+	void bookSaved(Book book);
+
+	/**
+	 * A book was removed.
+	 * @param isbn sanitized ISBN of the removed book
+	 */
+	void bookRemoved(String isbn);
+}
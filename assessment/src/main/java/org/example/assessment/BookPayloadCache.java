@@ -0,0 +1,278 @@
+package org.example.assessment;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap cache of serialized books, keyed by the numeric ISBN. Payloads are
+ * appended to fixed-size direct {@link ByteBuffer} slabs, so cache size does
+ * not add to the heap and is bounded by -XX:MaxDirectMemorySize instead.
+ * Only a primitive index (16 bytes per book) lives on the heap.
+ * <p>
+ * Slabs are filled one after the other and reused in the same order: when the
+ * cache is full, the oldest slab is emptied as a whole, which evicts the books
+ * written longest ago. A changed or removed book is dropped from the index
+ * right away; its bytes stay in the slab until the slab is reused.
+ * <p>
+ * Every record carries the {@link ChangeStamps} stamp its book had before it
+ * was loaded. A record is only served while the book still has that stamp, so
+ * changes observed by this node, including those of other cluster nodes,
+ * take effect even before the invalidation reaches the cache.
+ */
+public class BookPayloadCache implements BookChangeListener {
+
+	/**
+	 * Record header: ISBN, change stamp, version and payload length
+	 */
+	private static final int HEADER_SIZE = 8 + 8 + 8 + 4;
+
+	/**
+	 * A cached book: its JSON representation and the version it was serialized from.
+	 */
+	public static class Payload {
+		private final long version;
+		private final byte[] json;
+
+		Payload(long version, byte[] json) {
+			this.version = version;
+			this.json = json;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public byte[] getJson() {
+			return json;
+		}
+	}
+
+	private final int slabSize;
+	private final ByteBuffer[] slabs;
+
+	/**
+	 * ISBN to location of the record, (slab index << 32) | offset. Guarded by lock.
+	 */
+	private final LongLongHashMap index = new LongLongHashMap(1024);
+
+	/**
+	 * ISBNs written to each slab, for eviction when the slab is reused. Guarded by lock.
+	 */
+	private final long[][] slabKeys;
+	private final int[] slabKeyCounts;
+
+	/**
+	 * Slab currently being written and the write offset within it. Guarded by lock.
+	 */
+	private int currentSlab;
+	private int writeOffset;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ChangeStamps stamps;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param capacity total size in bytes of all slabs
+	 * @param slabSize size in bytes of a single slab, and thus the maximum size of a cached book
+	 * @param stamps change stamps of this node, updated before the cache learns of a change
+	 */
+	public BookPayloadCache(long capacity, int slabSize, ChangeStamps stamps) {
+		this.slabSize = slabSize;
+		this.stamps = stamps;
+		int count = (int) Math.max(2, Math.min(Integer.MAX_VALUE, capacity / slabSize));
+		this.slabs = new ByteBuffer[count];
+		this.slabKeys = new long[count][];
+		this.slabKeyCounts = new int[count];
+	}
+
+	/**
+	 * @param key key from {@link Book#getISBNKey(String)}
+	 * @return the cached book, or null
+	 */
+	public Payload get(long key) {
+		lock.readLock().lock();
+		try {
+			long location = index.get(key);
+			if (location == LongLongHashMap.MISSING) {
+				misses.incrementAndGet();
+				return null;
+			}
+			ByteBuffer record = slabs[(int) (location >>> 32)].duplicate();
+			record.position((int) location);
+			if (record.getLong() != key) {
+				throw new IllegalStateException("Payload cache index is corrupt for ISBN " + key);
+			}
+			if (record.getLong() != stamps.get(key)) {
+				// Changed meanwhile; the invalidation is on its way
+				misses.incrementAndGet();
+				return null;
+			}
+			long version = record.getLong();
+			byte[] json = new byte[record.getInt()];
+			record.get(json);
+			hits.incrementAndGet();
+			return new Payload(version, json);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param key key from {@link Book#getISBNKey(String)}
+	 * @return the current stamp of the book, to be passed to {@link #put(long, long, byte[], long)}
+	 *         along with the book loaded after this call
+	 */
+	public long getStamp(long key) {
+		return stamps.get(key);
+	}
+
+	/**
+	 * Cache a serialized book, unless it changed since it was loaded, or it is too large.
+	 * @param key key from {@link Book#getISBNKey(String)}
+	 * @param version version of the serialized book
+	 * @param json serialized book
+	 * @param stamp the stamp obtained before the book was loaded
+	 */
+	public void put(long key, long version, byte[] json, long stamp) {
+		int size = HEADER_SIZE + json.length;
+		if (key <= 0 || size > slabSize) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			// Checked under the lock: a change after this check is followed by an invalidation
+			if (stamp != stamps.get(key)) {
+				return;
+			}
+			if (slabs[currentSlab] == null || writeOffset + size > slabSize) {
+				nextSlab();
+			}
+			ByteBuffer slab = slabs[currentSlab];
+			slab.position(writeOffset);
+			slab.putLong(key).putLong(stamp).putLong(version).putInt(json.length).put(json);
+			index.put(key, ((long) currentSlab << 32) | writeOffset);
+			addSlabKey(key);
+			writeOffset += size;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Move on to the next slab, allocating it on first use and evicting its books otherwise.
+	 */
+	private void nextSlab() {
+		if (slabs[currentSlab] != null) {
+			currentSlab = (currentSlab + 1) % slabs.length;
+		}
+		if (slabs[currentSlab] == null) {
+			slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+			slabKeys[currentSlab] = new long[64];
+		}
+		else {
+			long[] keys = slabKeys[currentSlab];
+			for (int i = 0; i < slabKeyCounts[currentSlab]; i++) {
+				long location = index.get(keys[i]);
+				if (location != LongLongHashMap.MISSING && (int) (location >>> 32) == currentSlab) {
+					index.remove(keys[i]);
+					evictions.incrementAndGet();
+				}
+			}
+		}
+		slabKeyCounts[currentSlab] = 0;
+		writeOffset = 0;
+	}
+
+	private void addSlabKey(long key) {
+		long[] keys = slabKeys[currentSlab];
+		int count = slabKeyCounts[currentSlab];
+		if (count == keys.length) {
+			keys = slabKeys[currentSlab] = Arrays.copyOf(keys, count * 2);
+		}
+		keys[count] = key;
+		slabKeyCounts[currentSlab] = count + 1;
+	}
+
+	/**
+	 * Drop a book from the cache.
+	 * @param isbn ISBN in any notation
+	 */
+	public void invalidate(String isbn) {
+		long key = Book.getISBNKey(isbn);
+		if (key <= 0) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			index.remove(key);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void bookSaved(Book book) {
+		invalidate(book.getISBN());
+	}
+
+	@Override
+	public void bookRemoved(String isbn) {
+		invalidate(isbn);
+	}
+
+	/**
+	 * @return number of cached books
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return bytes of direct memory allocated so far
+	 */
+	public long getAllocated() {
+		lock.readLock().lock();
+		try {
+			long allocated = 0;
+			for (ByteBuffer slab : slabs) {
+				if (slab != null) {
+					allocated += slab.capacity();
+				}
+			}
+			return allocated;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return books evicted because their slab was reused
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
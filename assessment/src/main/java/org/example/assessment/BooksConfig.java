@@ -0,0 +1,476 @@
+package org.example.assessment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+/**
+ * Settings for the books module, read once at startup from the module's
+ * hippo:moduleconfig node. Any property that is not configured keeps its
+ * default value.
+ */
+public class BooksConfig {
+	/**
+	 * Location of the module configuration, as bootstrapped by hcm-config/main.yaml.
+	 */
+	static final String MODULE_CONFIG_PATH = "/hippo:configuration/hippo:modules/books-module/hippo:moduleconfig";
+
+	/**
+	 * Property name constants.
+	 */
+	static final String TRAVERSAL_PARALLELISM = "traversalParallelism";
+	static final String WRITE_BEHIND_ENABLED = "writeBehindEnabled";
+	static final String WRITE_BEHIND_CAPACITY = "writeBehindCapacity";
+	static final String WRITE_BEHIND_BATCH_SIZE = "writeBehindBatchSize";
+	static final String WRITE_BEHIND_FLUSH_INTERVAL = "writeBehindFlushInterval";
+	static final String SEARCH_CACHE_SIZE = "searchCacheSize";
+	static final String SEARCH_CACHE_TTL = "searchCacheTtl";
+	static final String PAYLOAD_CACHE_SIZE = "payloadCacheSize";
+	static final String PAYLOAD_CACHE_SLAB_SIZE = "payloadCacheSlabSize";
+	static final String ISBN_INDEX_FILE = "isbnIndexFile";
+	static final String ISBN_INDEX_SLOTS = "isbnIndexSlots";
+	static final String ACCESS_STATS_FILE = "accessStatsFile";
+	static final String STATS_TOP_K = "statsTopK";
+	static final String WARMUP_ENABLED = "warmupEnabled";
+	static final String WARMUP_TOP_ISBNS = "warmupTopIsbns";
+	static final String WARMUP_TOP_QUERIES = "warmupTopQueries";
+	static final String WARMUP_QUERIES = "warmupQueries";
+	static final String WARMUP_TIME_LIMIT = "warmupTimeLimit";
+	static final String RATE_LIMIT_ENABLED = "rateLimitEnabled";
+	static final String RATE_LIMIT_MAX_CLIENTS = "rateLimitMaxClients";
+	static final String RATE_LIMIT_RATE_SUFFIX = "RatePerMinute";
+	static final String RATE_LIMIT_BURST_SUFFIX = "Burst";
+	static final String SHARD_LOCK_STRIPES = "shardLockStripes";
+	static final String SLOW_REQUEST_THRESHOLD = "slowRequestThreshold";
+	static final String SLOW_REQUEST_SAMPLE_PERCENT = "slowRequestSamplePercent";
+	static final String MAINTENANCE_ENABLED = "maintenanceEnabled";
+	static final String MAINTENANCE_INTERVAL = "maintenanceInterval";
+	static final String MAINTENANCE_BATCH_SIZE = "maintenanceBatchSize";
+	static final String MAINTENANCE_THROTTLE = "maintenanceThrottle";
+	static final String HEALTH_PROBE_INTERVAL = "healthProbeInterval";
+	static final String HEALTH_MAX_READ_AGE = "healthMaxReadAge";
+
+	/**
+	 * Upper bound for isbnIndexSlots, keeping the index file below 512 MB
+	 */
+	static final int MAX_ISBN_INDEX_SLOTS = 16 * 1024 * 1024;
+
+	/**
+	 * Maximum number of worker threads (and thus sessions) used for full-catalog traversals
+	 */
+	protected int traversalParallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Whether PUT /books queues updates for asynchronous storage instead of saving them in the request
+	 */
+	protected boolean writeBehindEnabled = false;
+
+	/**
+	 * Maximum number of distinct ISBNs waiting in the write-behind queue
+	 */
+	protected int writeBehindCapacity = 10000;
+
+	/**
+	 * Maximum number of books stored per write-behind session save
+	 */
+	protected int writeBehindBatchSize = 500;
+
+	/**
+	 * Delay in milliseconds between write-behind flushes
+	 */
+	protected long writeBehindFlushInterval = 1000;
+
+	/**
+	 * Maximum number of search queries whose results are cached, 0 to disable the cache
+	 */
+	protected int searchCacheSize = 1000;
+
+	/**
+	 * Time in milliseconds after which a cached search result expires
+	 */
+	protected long searchCacheTtl = 60000;
+
+	/**
+	 * Bytes of direct (off-heap) memory for serialized books served by GET /books/{isbn}, 0 to disable
+	 */
+	protected long payloadCacheSize = 64L * 1024 * 1024;
+
+	/**
+	 * Bytes per payload cache slab; the cache evicts one slab at a time
+	 */
+	protected int payloadCacheSlabSize = 4 * 1024 * 1024;
+
+	/**
+	 * Location of the persistent ISBN index file; defaults to books-isbn.idx in the repository
+	 * directory (repo.path) or, failing that, the temporary directory
+	 */
+	protected String isbnIndexFile = defaultFile("books-isbn.idx");
+
+	/**
+	 * Number of slots in the ISBN index file, 32 bytes each; room for three quarters as many books.
+	 * 0 disables the index.
+	 */
+	protected int isbnIndexSlots = 1024 * 1024;
+
+	/**
+	 * Location of the request counts saved at shutdown for the next warm-up; defaults to
+	 * books-access.stats next to the ISBN index
+	 */
+	protected String accessStatsFile = defaultFile("books-access.stats");
+
+	/**
+	 * Number of most requested ISBNs, queries and unknown ISBNs tracked by name; also bounds
+	 * how many ISBNs and queries the warm-up can use
+	 */
+	protected int statsTopK = 1000;
+
+	/**
+	 * Whether caches are warmed up in the background at startup; /books/ready reports 503 until done
+	 */
+	protected boolean warmupEnabled = true;
+
+	/**
+	 * Number of most requested ISBNs of the previous run to preload
+	 */
+	protected int warmupTopIsbns = 1000;
+
+	/**
+	 * Number of most requested queries of the previous run to execute
+	 */
+	protected int warmupTopQueries = 50;
+
+	/**
+	 * Queries that are always executed during warm-up
+	 */
+	protected List<String> warmupQueries = Collections.emptyList();
+
+	/**
+	 * Maximum time in milliseconds from startup until the warm-up stops and the module reports ready,
+	 * unless building the indexes alone takes longer
+	 */
+	protected long warmupTimeLimit = 120000;
+
+	/**
+	 * Whether requests to /books are rate limited per client
+	 */
+	protected boolean rateLimitEnabled = true;
+
+	/**
+	 * Maximum number of tracked client buckets; newcomers beyond it share one bucket per endpoint class
+	 */
+	protected int rateLimitMaxClients = 10000;
+
+	/**
+	 * Sustained requests per minute and burst size per endpoint class, configured as
+	 * rateLimit&lt;Class&gt;RatePerMinute and rateLimit&lt;Class&gt;Burst, e.g. rateLimitSearchBurst
+	 */
+	protected Map<RateLimiter.EndpointClass, RateLimiter.Limit> rateLimits = defaultRateLimits();
+
+	/**
+	 * Number of locks serializing writes to shard folders within this JVM
+	 */
+	protected int shardLockStripes = 64;
+
+	/**
+	 * Duration in milliseconds above which a traced request is logged as slow; 0 logs every traced request
+	 */
+	protected long slowRequestThreshold = 1000;
+
+	/**
+	 * Percentage of requests that are traced for the slow-request log; 0 disables tracing.
+	 * A small sample finds systematically slow requests; raise it temporarily to chase rare ones
+	 */
+	protected int slowRequestSamplePercent = 2;
+
+	/**
+	 * Whether the scheduled maintenance of the shard folders runs
+	 */
+	protected boolean maintenanceEnabled = true;
+
+	/**
+	 * Milliseconds between two maintenance runs
+	 */
+	protected long maintenanceInterval = 60 * 60 * 1000;
+
+	/**
+	 * Maximum number of shard folders checked per maintenance run
+	 */
+	protected int maintenanceBatchSize = 100;
+
+	/**
+	 * Milliseconds the maintenance pauses between two shard folders
+	 */
+	protected long maintenanceThrottle = 50;
+
+	/**
+	 * Milliseconds between two health probes
+	 */
+	protected long healthProbeInterval = 5000;
+
+	/**
+	 * Milliseconds after the last successful probe read at which the node reports unhealthy
+	 */
+	protected long healthMaxReadAge = 15000;
+
+	/**
+	 * Read the module configuration using the given session.
+	 * @param session a session with read access to the module configuration
+	 * @return the configuration, with defaults for everything that is not configured
+	 * @throws RepositoryException
+	 */
+	public static BooksConfig load(Session session) throws RepositoryException {
+		BooksConfig config = new BooksConfig();
+		if (session.nodeExists(MODULE_CONFIG_PATH)) {
+			config.read(session.getNode(MODULE_CONFIG_PATH));
+		}
+		return config;
+	}
+
+	/**
+	 * Copy all known settings from the module configuration node.
+	 * @param configNode the hippo:moduleconfig node
+	 * @throws RepositoryException
+	 */
+	protected void read(Node configNode) throws RepositoryException {
+		traversalParallelism = (int) Math.max(1, getLong(configNode, TRAVERSAL_PARALLELISM, traversalParallelism));
+		writeBehindEnabled = getBoolean(configNode, WRITE_BEHIND_ENABLED, writeBehindEnabled);
+		writeBehindCapacity = (int) Math.max(1, getLong(configNode, WRITE_BEHIND_CAPACITY, writeBehindCapacity));
+		writeBehindBatchSize = (int) Math.max(1, getLong(configNode, WRITE_BEHIND_BATCH_SIZE, writeBehindBatchSize));
+		writeBehindFlushInterval = Math.max(1, getLong(configNode, WRITE_BEHIND_FLUSH_INTERVAL, writeBehindFlushInterval));
+		searchCacheSize = (int) Math.max(0, getLong(configNode, SEARCH_CACHE_SIZE, searchCacheSize));
+		searchCacheTtl = Math.max(0, getLong(configNode, SEARCH_CACHE_TTL, searchCacheTtl));
+		payloadCacheSize = Math.max(0, getLong(configNode, PAYLOAD_CACHE_SIZE, payloadCacheSize));
+		payloadCacheSlabSize = (int) Math.max(64 * 1024,
+				Math.min(Integer.MAX_VALUE, getLong(configNode, PAYLOAD_CACHE_SLAB_SIZE, payloadCacheSlabSize)));
+		isbnIndexFile = getString(configNode, ISBN_INDEX_FILE, isbnIndexFile);
+		isbnIndexSlots = (int) Math.max(0,
+				Math.min(MAX_ISBN_INDEX_SLOTS, getLong(configNode, ISBN_INDEX_SLOTS, isbnIndexSlots)));
+		accessStatsFile = getString(configNode, ACCESS_STATS_FILE, accessStatsFile);
+		statsTopK = (int) Math.max(1, getLong(configNode, STATS_TOP_K, statsTopK));
+		warmupEnabled = getBoolean(configNode, WARMUP_ENABLED, warmupEnabled);
+		warmupTopIsbns = (int) Math.max(0, getLong(configNode, WARMUP_TOP_ISBNS, warmupTopIsbns));
+		warmupTopQueries = (int) Math.max(0, getLong(configNode, WARMUP_TOP_QUERIES, warmupTopQueries));
+		warmupQueries = getStrings(configNode, WARMUP_QUERIES, warmupQueries);
+		warmupTimeLimit = Math.max(0, getLong(configNode, WARMUP_TIME_LIMIT, warmupTimeLimit));
+		rateLimitEnabled = getBoolean(configNode, RATE_LIMIT_ENABLED, rateLimitEnabled);
+		rateLimitMaxClients = (int) Math.max(1, getLong(configNode, RATE_LIMIT_MAX_CLIENTS, rateLimitMaxClients));
+		Map<RateLimiter.EndpointClass, RateLimiter.Limit> limits = new EnumMap<>(RateLimiter.EndpointClass.class);
+		for (Map.Entry<RateLimiter.EndpointClass, RateLimiter.Limit> entry : rateLimits.entrySet()) {
+			String prefix = rateLimitPrefix(entry.getKey());
+			long rate = Math.max(0, getLong(configNode, prefix + RATE_LIMIT_RATE_SUFFIX, entry.getValue().getRatePerMinute()));
+			long burst = Math.max(1, getLong(configNode, prefix + RATE_LIMIT_BURST_SUFFIX, entry.getValue().getBurst()));
+			limits.put(entry.getKey(), new RateLimiter.Limit(rate, burst));
+		}
+		rateLimits = limits;
+		shardLockStripes = (int) Math.max(1, Math.min(1024, getLong(configNode, SHARD_LOCK_STRIPES, shardLockStripes)));
+		slowRequestThreshold = Math.max(0, getLong(configNode, SLOW_REQUEST_THRESHOLD, slowRequestThreshold));
+		slowRequestSamplePercent = (int) Math.max(0,
+				Math.min(100, getLong(configNode, SLOW_REQUEST_SAMPLE_PERCENT, slowRequestSamplePercent)));
+		maintenanceEnabled = getBoolean(configNode, MAINTENANCE_ENABLED, maintenanceEnabled);
+		maintenanceInterval = Math.max(1000, getLong(configNode, MAINTENANCE_INTERVAL, maintenanceInterval));
+		maintenanceBatchSize = (int) Math.max(1, getLong(configNode, MAINTENANCE_BATCH_SIZE, maintenanceBatchSize));
+		maintenanceThrottle = Math.max(0, getLong(configNode, MAINTENANCE_THROTTLE, maintenanceThrottle));
+		healthProbeInterval = Math.max(100, getLong(configNode, HEALTH_PROBE_INTERVAL, healthProbeInterval));
+		healthMaxReadAge = Math.max(healthProbeInterval, getLong(configNode, HEALTH_MAX_READ_AGE, healthMaxReadAge));
+	}
+
+	private static Map<RateLimiter.EndpointClass, RateLimiter.Limit> defaultRateLimits() {
+		Map<RateLimiter.EndpointClass, RateLimiter.Limit> limits = new EnumMap<>(RateLimiter.EndpointClass.class);
+		limits.put(RateLimiter.EndpointClass.LIST, new RateLimiter.Limit(600, 60));
+		limits.put(RateLimiter.EndpointClass.READ, new RateLimiter.Limit(6000, 600));
+		limits.put(RateLimiter.EndpointClass.SEARCH, new RateLimiter.Limit(1200, 200));
+		limits.put(RateLimiter.EndpointClass.WRITE, new RateLimiter.Limit(3000, 300));
+		return limits;
+	}
+
+	/**
+	 * @return the property name prefix of an endpoint class, e.g. "rateLimitSearch"
+	 */
+	static String rateLimitPrefix(RateLimiter.EndpointClass endpointClass) {
+		String name = endpointClass.name();
+		return "rateLimit" + name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param name file name
+	 * @return path of a file in the repository directory (repo.path), or the temporary directory
+	 */
+	static String defaultFile(String name) {
+		return new File(System.getProperty("repo.path", System.getProperty("java.io.tmpdir")), name).getPath();
+	}
+
+	/**
+	 * Read an optional long property.
+	 */
+	static long getLong(Node node, String name, long defaultValue) throws RepositoryException {
+		return node.hasProperty(name) ? node.getProperty(name).getLong() : defaultValue;
+	}
+
+	/**
+	 * Read an optional string property; blank values count as not configured.
+	 */
+	static String getString(Node node, String name, String defaultValue) throws RepositoryException {
+		if (node.hasProperty(name)) {
+			String value = node.getProperty(name).getString();
+			if (!value.trim().isEmpty()) {
+				return value.trim();
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Read an optional multi-valued string property.
+	 */
+	static List<String> getStrings(Node node, String name, List<String> defaultValue) throws RepositoryException {
+		if (!node.hasProperty(name)) {
+			return defaultValue;
+		}
+		Property property = node.getProperty(name);
+		if (!property.isMultiple()) {
+			return Collections.singletonList(property.getString());
+		}
+		List<String> values = new ArrayList<>();
+		for (Value value : property.getValues()) {
+			values.add(value.getString());
+		}
+		return values;
+	}
+
+	/**
+	 * Read an optional boolean property.
+	 */
+	static boolean getBoolean(Node node, String name, boolean defaultValue) throws RepositoryException {
+		return node.hasProperty(name) ? node.getProperty(name).getBoolean() : defaultValue;
+	}
+
+	public int getTraversalParallelism() {
+		return traversalParallelism;
+	}
+
+	public boolean isWriteBehindEnabled() {
+		return writeBehindEnabled;
+	}
+
+	public int getWriteBehindCapacity() {
+		return writeBehindCapacity;
+	}
+
+	public int getWriteBehindBatchSize() {
+		return writeBehindBatchSize;
+	}
+
+	public long getWriteBehindFlushInterval() {
+		return writeBehindFlushInterval;
+	}
+
+	public int getSearchCacheSize() {
+		return searchCacheSize;
+	}
+
+	public long getSearchCacheTtl() {
+		return searchCacheTtl;
+	}
+
+	public long getPayloadCacheSize() {
+		return payloadCacheSize;
+	}
+
+	public int getPayloadCacheSlabSize() {
+		return payloadCacheSlabSize;
+	}
+
+	public String getIsbnIndexFile() {
+		return isbnIndexFile;
+	}
+
+	public int getIsbnIndexSlots() {
+		return isbnIndexSlots;
+	}
+
+	public String getAccessStatsFile() {
+		return accessStatsFile;
+	}
+
+	public int getStatsTopK() {
+		return statsTopK;
+	}
+
+	public boolean isWarmupEnabled() {
+		return warmupEnabled;
+	}
+
+	public int getWarmupTopIsbns() {
+		return warmupTopIsbns;
+	}
+
+	public int getWarmupTopQueries() {
+		return warmupTopQueries;
+	}
+
+	public List<String> getWarmupQueries() {
+		return warmupQueries;
+	}
+
+	public long getWarmupTimeLimit() {
+		return warmupTimeLimit;
+	}
+
+	public boolean isRateLimitEnabled() {
+		return rateLimitEnabled;
+	}
+
+	public int getRateLimitMaxClients() {
+		return rateLimitMaxClients;
+	}
+
+	public Map<RateLimiter.EndpointClass, RateLimiter.Limit> getRateLimits() {
+		return rateLimits;
+	}
+
+	public int getShardLockStripes() {
+		return shardLockStripes;
+	}
+
+	public long getSlowRequestThreshold() {
+		return slowRequestThreshold;
+	}
+
+	public int getSlowRequestSamplePercent() {
+		return slowRequestSamplePercent;
+	}
+
+	public boolean isMaintenanceEnabled() {
+		return maintenanceEnabled;
+	}
+
+	public long getMaintenanceInterval() {
+		return maintenanceInterval;
+	}
+
+	public int getMaintenanceBatchSize() {
+		return maintenanceBatchSize;
+	}
+
+	public long getMaintenanceThrottle() {
+		return maintenanceThrottle;
+	}
+
+	public long getHealthProbeInterval() {
+		return healthProbeInterval;
+	}
+
+	public long getHealthMaxReadAge() {
+		return healthMaxReadAge;
+	}
+}
@@ -0,0 +1,261 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduled maintenance of the books content. Every run checks the next batch
+ * of children of /books, continuing where the previous run stopped, and
+ * <ul>
+ * <li>removes shard folders left empty, e.g. by a failed save of a removal,</li>
+ * <li>moves books stored in the wrong folder, or directly below /books, to the
+ * folder of their ISBN, and</li>
+ * <li>logs nodes it cannot repair: children without a valid book:isbn, or with
+ * one that doesn't match their name, and misplaced books whose proper
+ * location is taken.</li>
+ * </ul>
+ * Each folder is handled with its own short-lived session while holding the
+ * {@link ShardLocks} of the folders involved, so live writers wait for at
+ * most one folder. The job pauses between folders to limit its load, and
+ * logs and skips folders it fails to check.
+ */
+public class BooksMaintenance {
+
+	private static final Logger log = LoggerFactory.getLogger(BooksMaintenance.class);
+
+	private final BooksModule module;
+	private final int batchSize;
+	private final long throttle;
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Name of the last child of /books checked, where the next run continues. Only used by the
+	 * scheduler thread.
+	 */
+	private String position = "";
+
+	private final AtomicLong runs = new AtomicLong();
+	private final AtomicLong foldersChecked = new AtomicLong();
+	private final AtomicLong foldersRemoved = new AtomicLong();
+	private final AtomicLong booksMoved = new AtomicLong();
+	private final AtomicLong inconsistencies = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * @param module the module whose content is maintained
+	 * @param interval milliseconds between the end of a run and the start of the next
+	 * @param batchSize maximum number of children of /books checked per run
+	 * @param throttle milliseconds to pause between two folders
+	 */
+	public BooksMaintenance(BooksModule module, long interval, int batchSize, long throttle) {
+		this.module = module;
+		this.batchSize = batchSize;
+		this.throttle = throttle;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(BooksModule.namedThreadFactory("books-maintenance"));
+		scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the job, interrupting a run in progress between two folders.
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Check the next batch of folders.
+	 */
+	void run() {
+		try {
+			List<String> names = nextBatch();
+			for (String name : names) {
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+				try {
+					checkChild(name);
+				}
+				catch (RepositoryException | RuntimeException e) {
+					// Move on, so a single bad folder doesn't stall maintenance for good
+					failures.incrementAndGet();
+					log.error("Books maintenance failed to check /books/" + name + ", skipping it", e);
+				}
+				position = name;
+				TimeUnit.MILLISECONDS.sleep(throttle);
+			}
+			if (names.size() < batchSize) {
+				// Wrapped around; start over with the next run
+				position = "";
+			}
+			runs.incrementAndGet();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (RepositoryException | RuntimeException e) {
+			log.error("Books maintenance failed to list the folders after " + position, e);
+		}
+	}
+
+	/**
+	 * @return names of the next children of /books after the current position, in name order
+	 */
+	private List<String> nextBatch() throws RepositoryException {
+		TreeSet<String> names = new TreeSet<>();
+		Session session = module.loginSystemSession();
+		try {
+			for (NodeIterator children = module.getBooksRoot(session).getNodes(); children.hasNext();) {
+				String name = children.nextNode().getName();
+				if (name.compareTo(position) > 0) {
+					names.add(name);
+					if (names.size() > batchSize) {
+						names.pollLast();
+					}
+				}
+			}
+		}
+		finally {
+			session.logout();
+		}
+		return new ArrayList<>(names);
+	}
+
+	/**
+	 * Check and repair a single child of /books.
+	 * @param name name of a shard folder, or of a book stored directly below /books
+	 */
+	void checkChild(String name) throws RepositoryException {
+		Session session = module.loginSystemSession();
+		try {
+			Node booksRoot = module.getBooksRoot(session);
+			if (!booksRoot.hasNode(name)) {
+				return;
+			}
+			// Find out which folders are involved without locking, then lock them and check again
+			Node child = booksRoot.getNode(name);
+			TreeSet<String> folders = new TreeSet<>(Collections.singleton(name));
+			for (Node book : booksOf(child)) {
+				String isbn = getValidISBN(book);
+				if (isbn != null) {
+					folders.add(Book.getFolderKey(isbn));
+				}
+			}
+			try (ShardLocks.Held locks = module.getShardLocks().lockFolders(folders)) {
+				session.refresh(false);
+				if (booksRoot.hasNode(name)) {
+					repair(booksRoot, booksRoot.getNode(name));
+				}
+			}
+			foldersChecked.incrementAndGet();
+		}
+		finally {
+			session.logout();
+		}
+	}
+
+	/**
+	 * @return the child itself if it is a book, or else its children
+	 */
+	private static List<Node> booksOf(Node child) throws RepositoryException {
+		List<Node> books = new ArrayList<>();
+		if (child.hasProperty(Book.ISBN)) {
+			books.add(child);
+		}
+		else {
+			for (NodeIterator nodes = child.getNodes(); nodes.hasNext();) {
+				books.add(nodes.nextNode());
+			}
+		}
+		return books;
+	}
+
+	private void repair(Node booksRoot, Node child) throws RepositoryException {
+		Session session = booksRoot.getSession();
+		String folderName = child.hasProperty(Book.ISBN) ? null : child.getName();
+		List<String> moved = new ArrayList<>();
+		for (Node book : booksOf(child)) {
+			String isbn = getValidISBN(book);
+			if (isbn == null) {
+				report(book, "has no valid " + Book.ISBN);
+				continue;
+			}
+			if (!isbn.equals(book.getName())) {
+				report(book, "is named differently from its ISBN " + isbn);
+				continue;
+			}
+			String folderKey = Book.getFolderKey(isbn);
+			if (folderKey.equals(folderName)) {
+				continue;
+			}
+			Node target = booksRoot.hasNode(folderKey) ? booksRoot.getNode(folderKey) : booksRoot.addNode(folderKey);
+			if (target.hasNode(isbn)) {
+				report(book, "is misplaced, but " + target.getPath() + "/" + isbn + " exists");
+				continue;
+			}
+			String source = book.getPath();
+			session.move(source, target.getPath() + "/" + isbn);
+			moved.add(isbn);
+			log.info("Moved misplaced book {} to {}", source, target.getPath());
+		}
+		boolean removeFolder = folderName != null && !child.hasNodes();
+		if (removeFolder) {
+			child.remove();
+		}
+		if (moved.isEmpty() && !removeFolder) {
+			return;
+		}
+		session.save();
+		booksMoved.addAndGet(moved.size());
+		if (removeFolder) {
+			foldersRemoved.incrementAndGet();
+			log.info("Removed empty shard folder {}", folderName);
+		}
+		module.getChangeDispatcher().refresh(booksRoot, moved);
+	}
+
+	/**
+	 * @return the sanitized ISBN of a book node, or null if it has none or it is not a valid ISBN
+	 */
+	private static String getValidISBN(Node book) throws RepositoryException {
+		if (!book.hasProperty(Book.ISBN)) {
+			return null;
+		}
+		String isbn = Book.sanitizeISBN(book.getProperty(Book.ISBN).getString());
+		return Book.getISBNKey(isbn) > 0 ? isbn : null;
+	}
+
+	private void report(Node node, String problem) throws RepositoryException {
+		inconsistencies.incrementAndGet();
+		log.warn("Inconsistent books content: {} {}", node.getPath(), problem);
+	}
+
+	/**
+	 * @return counts of the work done since startup, as a JSON-friendly map
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("runs", runs.get());
+		snapshot.put("foldersChecked", foldersChecked.get());
+		snapshot.put("foldersRemoved", foldersRemoved.get());
+		snapshot.put("booksMoved", booksMoved.get());
+		snapshot.put("inconsistencies", inconsistencies.get());
+		snapshot.put("failures", failures.get());
+		return snapshot;
+	}
+}
@@ -1,9 +1,30 @@
 package org.example.assessment;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemExistsException;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
@@ -12,19 +33,27 @@ import javax.jcr.SimpleCredentials;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import javax.jcr.query.QueryResult;
+import javax.management.JMException;
 
 import javax.annotation.PreDestroy;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.jackrabbit.util.Text;
@@ -38,6 +67,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 
 /**
@@ -49,17 +79,132 @@ public class BooksModule implements DaemonModule {
 
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
+    /**
+     * Location of the books content
+     */
+    static final String BOOKS_PATH = "/books";
+
+    /**
+     * Change stamp slots for cache validation, 512 KB
+     */
+    static final int CHANGE_STAMP_SLOTS = 64 * 1024;
+
+    /**
+     * Milliseconds to wait before building the indexes again after a failure
+     */
+    static final long INDEX_RETRY_DELAY = 10000;
+
+    /**
+     * The currently initialized module, giving the request-scoped {@link BooksResource} access to
+     * the shared services. Null while the module is not running.
+     */
+    private static volatile BooksModule active;
+
+    private Session systemSession;
+    private BooksConfig config;
+    private ForkJoinPool traversalPool;
+    private ShardTraversal shardTraversal;
+    private WriteBehindQueue writeBehindQueue;
+    private BooksMaintenance maintenance;
+    private HealthProbe healthProbe;
+    private BookChangeDispatcher changeDispatcher;
+    private ChangeStamps changeStamps;
+    private AuthorIndex authorIndex;
+    private PublicationDateIndex publicationDateIndex;
+    private WorkIndex workIndex;
+    private SuggestIndex suggestIndex;
+    private QueryCache queryCache;
+    private BookPayloadCache payloadCache;
+    private IsbnNodeIndex isbnIndex;
+    private BooksStats stats;
+    private ShardLocks shardLocks;
+
+    /**
+     * Set once the indexes are built and the warm-up is done
+     */
+    private volatile boolean ready;
+
+    /**
+     * Failure of the last attempt to build the indexes, or null
+     */
+    private volatile String indexError;
+
+    /**
+     * Mapper shared by the JSON provider and the payload cache, so cached books are serialized
+     * exactly like uncached ones
+     */
+    private ObjectMapper objectMapper;
+    private ExecutorService indexer;
+
+    /**
+     * Identifier of the /books node, resolved once instead of checking the path on every request
+     */
+    private volatile String booksRootId;
+
     /**
      * Add books service to brXM at repository startup.
      */
     @Override
     public void initialize(final Session systemSession) throws RepositoryException {
-        RepositoryJaxrsService.addEndpoint(
-                new RepositoryJaxrsEndpoint("/books")
-                		.singleton(new JacksonJsonProvider(
-		                		// Enable pretty-printing output
-		                		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)))
-                        .rootClass(BooksResource.class));
+        this.systemSession = systemSession;
+        config = BooksConfig.load(systemSession);
+        provisionBooksRoot();
+        traversalPool = new ForkJoinPool(config.getTraversalParallelism());
+        shardTraversal = new ShardTraversal(traversalPool, this::loginSystemSession);
+        shardLocks = new ShardLocks(config.getShardLockStripes());
+        if (config.isWriteBehindEnabled()) {
+            writeBehindQueue = new WriteBehindQueue(this, config.getWriteBehindCapacity(),
+                    config.getWriteBehindBatchSize(), config.getWriteBehindFlushInterval());
+        }
+        authorIndex = new AuthorIndex();
+        changeDispatcher = new BookChangeDispatcher(this);
+        // Stamps first, so caches never see a change before it is stamped
+        changeStamps = new ChangeStamps(CHANGE_STAMP_SLOTS);
+        changeDispatcher.addListener(changeStamps);
+        isbnIndex = openIsbnIndex();
+        if (isbnIndex != null) {
+            changeDispatcher.addListener(isbnIndex);
+        }
+        changeDispatcher.addListener(authorIndex);
+        publicationDateIndex = new PublicationDateIndex();
+        changeDispatcher.addListener(publicationDateIndex);
+        workIndex = new WorkIndex();
+        changeDispatcher.addListener(workIndex);
+        suggestIndex = new SuggestIndex();
+        changeDispatcher.addListener(suggestIndex);
+        queryCache = new QueryCache(config.getSearchCacheSize(), config.getSearchCacheTtl());
+        changeDispatcher.addListener(queryCache);
+        if (config.getPayloadCacheSize() > 0) {
+            payloadCache = new BookPayloadCache(config.getPayloadCacheSize(), config.getPayloadCacheSlabSize(), changeStamps);
+            changeDispatcher.addListener(payloadCache);
+        }
+        changeDispatcher.start();
+        stats = loadStats();
+        // Enable pretty-printing output
+        objectMapper = createObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        active = this;
+
+        // Populate the indexes and warm up in the background; changes made meanwhile arrive as events
+        indexer = Executors.newSingleThreadExecutor(namedThreadFactory("books-indexer"));
+        indexer.submit(this::prepare);
+        healthProbe = new HealthProbe(this, config.getHealthProbeInterval(), config.getHealthMaxReadAge());
+        if (config.isMaintenanceEnabled()) {
+            maintenance = new BooksMaintenance(this, config.getMaintenanceInterval(),
+                    config.getMaintenanceBatchSize(), config.getMaintenanceThrottle());
+        }
+
+        RepositoryJaxrsEndpoint endpoint = new RepositoryJaxrsEndpoint("/books")
+                .singleton(new JacksonJsonProvider(objectMapper))
+                .rootClass(BooksResource.class);
+        if (config.getSlowRequestSamplePercent() > 0) {
+            endpoint.singleton(new RequestTraceFilter(config.getSlowRequestThreshold(),
+                    config.getSlowRequestSamplePercent()));
+        }
+        if (config.isRateLimitEnabled()) {
+            endpoint.singleton(new RateLimitFilter(
+                    new RateLimiter(config.getRateLimits(), config.getRateLimitMaxClients())));
+        }
+        RepositoryJaxrsService.addEndpoint(endpoint);
         log.debug("/books endpoint added");
     }
 
@@ -70,28 +215,477 @@ public class BooksModule implements DaemonModule {
     public void shutdown() {
         RepositoryJaxrsService.removeEndpoint("/books");
         log.debug("/books endpoint removed");
+        active = null;
+        if (writeBehindQueue != null) {
+            writeBehindQueue.shutdown();
+        }
+        healthProbe.shutdown();
+        if (maintenance != null) {
+            maintenance.shutdown();
+        }
+        changeDispatcher.stop();
+        indexer.shutdownNow();
+        if (isbnIndex != null) {
+            isbnIndex.close();
+        }
+        saveStats();
+        traversalPool.shutdownNow();
+    }
+
+    /**
+     * Open the persistent ISBN index, if configured. Failing to open it is not fatal; lookups
+     * then simply go by path.
+     * @return the index, or null
+     */
+    private IsbnNodeIndex openIsbnIndex() {
+        if (config.getIsbnIndexSlots() == 0) {
+            return null;
+        }
+        File file = new File(config.getIsbnIndexFile());
+        try {
+            IsbnNodeIndex index = IsbnNodeIndex.open(file, config.getIsbnIndexSlots());
+            if (index == null) {
+                log.warn("ISBN index {} is in use by another process, not using it", file);
+            }
+            else {
+                log.info("ISBN index {} opened {} with {} books", file, index.isWarm() ? "warm" : "cold", index.size());
+            }
+            return index;
+        }
+        catch (IOException e) {
+            log.warn("Unable to open ISBN index " + file + ", not using it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Build the in-memory indexes, warm up if configured, and report ready. The module is not
+     * ready without complete indexes, so building them is retried until it succeeds. The
+     * warm-up is best effort, and stops at the warm-up time limit counted from the start.
+     */
+    private void prepare() {
+        long start = System.currentTimeMillis();
+        long deadline = start + config.getWarmupTimeLimit();
+        for (int attempt = 1; ; attempt++) {
+            Session session = null;
+            try {
+                session = loginSystemSession();
+                changeDispatcher.publishAll(shardTraversal, getBooksRoot(session));
+                log.info("Book indexes built in {} ms, {} books", System.currentTimeMillis() - start, authorIndex.size());
+                indexError = null;
+                if (config.isWarmupEnabled()) {
+                    try {
+                        new Warmup(this, deadline).run(session);
+                    }
+                    catch (RepositoryException | RuntimeException e) {
+                        log.warn("Warm-up failed, continuing with cold caches", e);
+                    }
+                }
+                ready = true;
+                return;
+            }
+            catch (RepositoryException | RuntimeException e) {
+                log.error("Unable to build book indexes, retrying in " + INDEX_RETRY_DELAY + " ms", e);
+                indexError = e.toString();
+            }
+            finally {
+                if (session != null) {
+                    session.logout();
+                }
+            }
+            try {
+                Thread.sleep(INDEX_RETRY_DELAY);
+            }
+            catch (InterruptedException e) {
+                // Shutting down
+                return;
+            }
+        }
+    }
+
+    /**
+     * Create the request statistics, restoring the counts of the previous run, and register
+     * them with JMX. Missing or unreadable stats only make the warm-up less effective.
+     */
+    private BooksStats loadStats() {
+        BooksStats stats = new BooksStats(this, config.getStatsTopK());
+        try {
+            stats.load(new File(config.getAccessStatsFile()));
+        }
+        catch (IOException e) {
+            log.warn("Unable to read access stats from " + config.getAccessStatsFile(), e);
+        }
+        try {
+            stats.register();
+        }
+        catch (JMException e) {
+            log.warn("Unable to register books statistics MBean", e);
+        }
+        return stats;
+    }
+
+    private void saveStats() {
+        try {
+            stats.unregister();
+        }
+        catch (JMException e) {
+            log.debug("Unable to unregister books statistics MBean", e);
+        }
+        try {
+            stats.save(new File(config.getAccessStatsFile()));
+        }
+        catch (IOException e) {
+            log.warn("Unable to save access stats to " + config.getAccessStatsFile(), e);
+        }
+    }
+
+    /**
+     * @param name thread name
+     * @return factory for the daemon threads of this module's background services
+     */
+    static ThreadFactory namedThreadFactory(final String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Resolve the root node for books content by its cached identifier.
+     * @param session the session through which the node is returned
+     * @return root node for books content
+     * @throws RepositoryException
+     */
+    Node getBooksRoot(Session session) throws RepositoryException {
+        String id = booksRootId;
+        if (id != null) {
+            try {
+                return session.getNodeByIdentifier(id);
+            }
+            catch (ItemNotFoundException e) {
+                log.info("/books was removed, provisioning it again");
+            }
+        }
+        return session.getNodeByIdentifier(provisionBooksRoot());
+    }
+
+    /**
+     * Create /books if it doesn't exist and cache its identifier. Concurrent callers are
+     * serialized, so they cannot race to create the node.
+     * Shard folders are still created on demand by {@link Book#save(Node)}, as
+     * {@link Book#removeByISBN(Node, String)} removes folders once they are empty.
+     * @return identifier of the /books node
+     * @throws RepositoryException
+     */
+    synchronized String provisionBooksRoot() throws RepositoryException {
+        String id = booksRootId;
+        if (id != null) {
+            try {
+                systemSession.getNodeByIdentifier(id);
+                return id;
+            }
+            catch (ItemNotFoundException e) {
+                // removed meanwhile; create it again
+            }
+        }
+        booksRootId = getOrCreateBooksNode(systemSession).getIdentifier();
+        return booksRootId;
+    }
+
+    /**
+     * Get the root node for books content, creating it if necessary.
+     * @param session the session to use; it is saved if the node has to be created
+     * @return root node for books content
+     * @throws RepositoryException
+     */
+    static Node getOrCreateBooksNode(Session session) throws RepositoryException {
+        if (!session.nodeExists(BOOKS_PATH)) {
+            Node rootNode = session.getRootNode();
+            rootNode.addNode("books");
+            session.save();
+        }
+        return session.getNode(BOOKS_PATH);
+    }
+
+    /**
+     * @return the running module, or null if it is not initialized
+     */
+    static BooksModule getActive() {
+        return active;
+    }
+
+    /**
+     * Open an additional system session for background or worker use. The caller is responsible
+     * for logging it out. Impersonation goes through the shared module session, hence the lock.
+     * @return a new system session
+     * @throws RepositoryException
+     */
+    synchronized Session loginSystemSession() throws RepositoryException {
+        return systemSession.impersonate(new SimpleCredentials("system", new char[] {}));
+    }
+
+    BooksConfig getConfig() {
+        return config;
+    }
+
+    ForkJoinPool getTraversalPool() {
+        return traversalPool;
+    }
+
+    HealthProbe getHealthProbe() {
+        return healthProbe;
+    }
+
+    ShardTraversal getShardTraversal() {
+        return shardTraversal;
+    }
+
+    /**
+     * Dump the books content, descending into the shard folders in parallel, e.g. to verify a
+     * migration; see {@link SubtreeDumper}.
+     * @param out destination of the dump
+     * @return hash of the books content
+     * @throws RepositoryException
+     * @throws IOException if writing fails
+     */
+    public String dumpBooks(Writer out) throws RepositoryException, IOException {
+        Session session = loginSystemSession();
+        try {
+            return new SubtreeDumper().dump(getBooksRoot(session), out, shardTraversal);
+        }
+        finally {
+            session.logout();
+        }
+    }
+
+    /**
+     * @return locks serializing writes per shard folder
+     */
+    ShardLocks getShardLocks() {
+        return shardLocks;
+    }
+
+    /**
+     * @return the write-behind queue, or null if write-behind mode is disabled
+     */
+    WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    /**
+     * @return the scheduled maintenance, or null if it is disabled
+     */
+    BooksMaintenance getMaintenance() {
+        return maintenance;
+    }
+
+    BookChangeDispatcher getChangeDispatcher() {
+        return changeDispatcher;
+    }
+
+    AuthorIndex getAuthorIndex() {
+        return authorIndex;
+    }
+
+    PublicationDateIndex getPublicationDateIndex() {
+        return publicationDateIndex;
+    }
+
+    WorkIndex getWorkIndex() {
+        return workIndex;
+    }
+
+    SuggestIndex getSuggestIndex() {
+        return suggestIndex;
+    }
+
+    QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    ChangeStamps getChangeStamps() {
+        return changeStamps;
+    }
+
+    /**
+     * @return the payload cache, or null if it is disabled
+     */
+    BookPayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    /**
+     * @return the persistent ISBN index, or null if it is disabled or unavailable
+     */
+    IsbnNodeIndex getIsbnIndex() {
+        return isbnIndex;
+    }
+
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Create the mapping used for the REST API and the payload cache. Dates are written
+     * as ISO-8601 in UTC, e.g. "1994-03-23T10:09:24.669+00:00", and read as ISO-8601 or
+     * epoch milliseconds; impossible dates such as February 30th are rejected.
+     * @return a new mapper
+     */
+    static ObjectMapper createObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .setDateFormat(new StdDateFormat().withColonInTimeZone(true));
+        mapper.setDefaultLeniency(false);
+        return mapper;
+    }
+
+    BooksStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return true once the indexes are built and the warm-up is done
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the failure of the last attempt to build the indexes, or null if none failed
+     *         since the last success
+     */
+    String getIndexError() {
+        return indexError;
+    }
+
+    /**
+     * Load a single book, resolving its node through the persistent ISBN index when possible.
+     * @param session the session to read with
+     * @param isbn ISBN of the book
+     * @param properties JCR properties to read eagerly; others are loaded lazily
+     * @return the book, or null if there is no such book
+     * @throws RepositoryException
+     */
+    Book loadBook(Session session, String isbn, Collection<String> properties) throws RepositoryException {
+        if (isbnIndex != null) {
+            Node bookNode;
+            try (RequestTrace.Span span = RequestTrace.span(RequestTrace.LOOKUP)) {
+                bookNode = isbnIndex.findBookNode(session, isbn);
+            }
+            if (bookNode != null) {
+                Book book = new Book();
+                book.load(bookNode, properties);
+                return book;
+            }
+        }
+        return Book.loadByISBN(getBooksRoot(session), isbn, properties);
+    }
+
+    /**
+     * Get a serialized book from the payload cache, loading and caching it on a miss.
+     * Only call this if the payload cache is enabled.
+     * @param session the session to read with on a miss
+     * @param isbn ISBN of the book
+     * @return the cached book, or null if there is no such book
+     * @throws RepositoryException
+     * @throws IOException if the book cannot be serialized
+     */
+    BookPayloadCache.Payload loadPayload(Session session, String isbn) throws RepositoryException, IOException {
+        long key = Book.getISBNKey(isbn);
+        BookPayloadCache.Payload payload = payloadCache.get(key);
+        if (payload == null) {
+            long stamp = payloadCache.getStamp(key);
+            Book book = loadBook(session, isbn, Book.FIELD_PROPERTIES.values());
+            if (book == null) {
+                return null;
+            }
+            payload = new BookPayloadCache.Payload(book.getVersion(), objectMapper.writeValueAsBytes(book));
+            payloadCache.put(key, payload.getVersion(), payload.getJson(), stamp);
+        }
+        return payload;
+    }
+
+    /**
+     * Run a full-text query for books.
+     * @param session the session to query with
+     * @param qString the search query string for a simple text contains match
+     * @param properties JCR properties to read eagerly; others are loaded lazily
+     * @param isbns if not null, receives the ISBNs of the matching books
+     * @return the matching books
+     * @throws RepositoryException
+     */
+    static List<Book> executeQuery(Session session, String qString, Collection<String> properties, List<String> isbns) throws RepositoryException {
+    	QueryManager qm = session.getWorkspace().getQueryManager();
+    	
+    	// Create and execute the query
+    	// Filter out folders by requiring an ISBN property
+    	//  and @"+Book.ISBN+"
+    	QueryResult qr;
+    	try (RequestTrace.Span span = RequestTrace.span(RequestTrace.QUERY)) {
+    		Query q = qm.createQuery("//books//*[jcr:contains(.,'"+qString+"') and @"+Book.ISBN+"]", "xpath");
+    		qr = q.execute();
+    	}
+    	
+    	// Iterate and accumulate results
+    	List<Book> books = new LinkedList<>();
+    	for (NodeIterator bookNodes = qr.getNodes(); bookNodes.hasNext();) {
+    		Node bookNode = bookNodes.nextNode();
+    		Book book = new Book();
+    		book.load(bookNode, properties);
+    		books.add(book);
+    		if (isbns != null) {
+    			isbns.add(book.getISBN());
+    		}
+    	}
+    	return books;
     }
 
     /**
      * The actual JAX-RS resource for book-related functions. This is a request-scoped resource, and
-     * it creates a new session for each request.
+     * it creates a new session for each request that reads or writes the repository.
      */
     public static class BooksResource {
 
         protected static final String SYSTEMUSER_ID = "admin";
         protected static final char[] SYSTEMUSER_PASSWORD = "admin".toCharArray();
 
-        private final Session systemSession;
+        /**
+         * Attempts for a batch of writes that keeps losing save races to concurrent writers
+         */
+        protected static final int MAX_SAVE_ATTEMPTS = 4;
+        protected static final long SAVE_BACKOFF_MILLIS = 10;
 
-        public BooksResource() throws RepositoryException {
-            final RepositoryService repository = HippoServiceRegistry.getService(RepositoryService.class);
-            systemSession = repository.login(new SimpleCredentials(SYSTEMUSER_ID, SYSTEMUSER_PASSWORD));
-        }
+        /**
+         * Upper bound for the limit= parameter of paged endpoints
+         */
+        protected static final int MAX_PAGE_SIZE = 100;
+
+        protected final Logger log = LoggerFactory.getLogger(getClass());
+
+        private Session systemSession;
 
         @PreDestroy
         public void destroy() {
             System.out.println("destroying");
-            systemSession.logout();
+            if (systemSession != null) {
+                systemSession.logout();
+            }
+        }
+
+        /**
+         * Get the session for this request, logging in on first use. Endpoints that are served
+         * from memory never log in at all.
+         * @return the request session
+         * @throws RepositoryException
+         */
+        protected Session getSession() throws RepositoryException {
+            if (systemSession == null) {
+                final RepositoryService repository = HippoServiceRegistry.getService(RepositoryService.class);
+                try (RequestTrace.Span span = RequestTrace.span(RequestTrace.LOGIN)) {
+                    systemSession = repository.login(new SimpleCredentials(SYSTEMUSER_ID, SYSTEMUSER_PASSWORD));
+                }
+            }
+            return systemSession;
         }
 
 		/**
@@ -99,24 +693,212 @@ public class BooksModule implements DaemonModule {
 		 * @throws RepositoryException
 		 */
 		protected Node getBooksNode() throws RepositoryException {
-			// Create the books node, if necessary
-	        if (!systemSession.nodeExists("/books")) {
-	        	Node rootNode = systemSession.getRootNode();
-	        	rootNode.addNode("books");
-	        	systemSession.save();
-	        }
-			return systemSession.getNode("/books");
+			BooksModule module = getActive();
+			Session session = getSession();
+			try (RequestTrace.Span span = RequestTrace.span(RequestTrace.BOOKS_NODE)) {
+				if (module == null) {
+					// Create the books node, if necessary
+					return getOrCreateBooksNode(session);
+				}
+				return module.getBooksRoot(session);
+			}
+		}
+
+		/**
+		 * Publish the current state of books changed by this request to the in-memory indexes,
+		 * so they reflect the change before the response is sent.
+		 * @param booksNode root node for books content
+		 * @param isbns ISBNs of saved or removed books
+		 * @throws RepositoryException
+		 */
+		protected void publishChanges(Node booksNode, Collection<String> isbns) throws RepositoryException {
+			BooksModule module = getActive();
+			if (module != null) {
+				module.getChangeDispatcher().refresh(booksNode, isbns);
+			}
+		}
+
+		/**
+		 * Save the request session.
+		 * @throws RepositoryException
+		 */
+		protected void saveSession() throws RepositoryException {
+			try (RequestTrace.Span span = RequestTrace.span(RequestTrace.SAVE)) {
+				getSession().save();
+			}
+		}
+
+		/**
+		 * Serialize writes to the shard folders of the given books with other writers in this JVM.
+		 * @param isbns sanitized ISBNs of the books to be written, or null for all shards
+		 * @return the held locks, to be closed once the session is saved or refreshed
+		 */
+		protected static ShardLocks.Held lockShards(Collection<String> isbns) {
+			BooksModule module = getActive();
+			if (module == null) {
+				return ShardLocks.Held.NONE;
+			}
+			return isbns != null ? module.getShardLocks().lock(isbns) : module.getShardLocks().lockAll();
+		}
+
+		/**
+		 * Load a single book, resolving its node through the persistent ISBN index when possible.
+		 * @param isbn ISBN of the book
+		 * @param properties JCR properties to read eagerly; others are loaded lazily
+		 * @return the book, or null if there is no such book
+		 * @throws RepositoryException
+		 */
+		protected Book loadBook(String isbn, Collection<String> properties) throws RepositoryException {
+			BooksModule module = getActive();
+			if (module != null) {
+				return module.loadBook(getSession(), isbn, properties);
+			}
+			return Book.loadByISBN(getBooksNode(), isbn, properties);
+		}
+
+		/**
+		 * Load books for a list of ISBNs taken from an index, skipping any that no longer exist.
+		 * @param isbns ISBNs in result order
+		 * @param projection requested field names, or null for all fields
+		 * @return the loaded books, in the given order
+		 * @throws RepositoryException
+		 */
+		protected List<Book> loadBooks(Collection<String> isbns, Set<String> projection) throws RepositoryException {
+			Collection<String> properties = Book.propertiesFor(projection);
+			List<Book> books = new ArrayList<>(isbns.size());
+			for (String isbn : isbns) {
+				Book book = loadBook(isbn, properties);
+				if (book != null) {
+					books.add(book);
+				}
+			}
+			return books;
+		}
+
+		/**
+		 * Parse the fields= projection parameter.
+		 * @param fields comma-separated JSON field names, or null
+		 * @return requested field names, or null for all fields
+		 * @throws WebApplicationException with BAD_REQUEST for unknown field names
+		 */
+		protected static Set<String> parseFields(String fields) {
+			try {
+				return Book.parseFields(fields);
+			}
+			catch (IllegalArgumentException e) {
+				throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+						.entity(StringEscapeUtils.escapeHtml4(e.getMessage())).build());
+			}
+		}
+
+		/**
+		 * Reduce books to the requested fields for serialization.
+		 * @param books loaded books
+		 * @param fields requested field names, or null for all fields
+		 * @return the books themselves, or one field map per book
+		 */
+		protected static Collection<?> project(Collection<Book> books, Set<String> fields) {
+			if (fields == null) {
+				return books;
+			}
+			List<Map<String, Object>> projections = new ArrayList<>(books.size());
+			for (Book book : books) {
+				projections.add(book.project(fields));
+			}
+			return projections;
+		}
+
+		/**
+		 * Reduce books to the requested fields for serialization, optionally collapsing editions.
+		 * @param books loaded books
+		 * @param fields requested field names, or null for all fields
+		 * @param collapse whether to return only the first book of every work
+		 * @return the books themselves, or one field map per book or work
+		 */
+		protected static Collection<?> project(Collection<Book> books, Set<String> fields, boolean collapse) {
+			return collapse ? collapseWorks(books, fields) : project(books, fields);
+		}
+
+		/**
+		 * Keep the first book of every work as its representative, adding the number of
+		 * editions of the work in the catalog, or in the given books if the module is not
+		 * running. Books without a title are works of their own.
+		 * @param books loaded books
+		 * @param fields requested field names, or null for all fields
+		 * @return one field map per work, with an "editions" count, in order of first appearance
+		 */
+		protected static List<Map<String, Object>> collapseWorks(Collection<Book> books, Set<String> fields) {
+			BooksModule module = getActive();
+			Set<String> projected = fields != null ? fields : Book.FIELD_PROPERTIES.keySet();
+			Map<String, Map<String, Object>> works = new LinkedHashMap<>();
+			Map<String, Integer> returned = new HashMap<>();
+			for (Book book : books) {
+				String workKey = module != null ? module.getWorkIndex().getWorkKey(book.getISBN()) : null;
+				if (workKey == null) {
+					// Not indexed yet, or the module is not running
+					workKey = book.getWorkKey();
+				}
+				String group = workKey != null ? workKey : book.getISBN();
+				if (!works.containsKey(group)) {
+					works.put(group, book.project(projected));
+				}
+				returned.merge(group, 1, Integer::sum);
+			}
+			for (Map.Entry<String, Map<String, Object>> work : works.entrySet()) {
+				int editions = returned.get(work.getKey());
+				if (module != null) {
+					editions = Math.max(editions, module.getWorkIndex().getEditions(work.getKey()).size());
+				}
+				work.getValue().put("editions", editions);
+			}
+			return new ArrayList<>(works.values());
+		}
+
+		/**
+		 * Parse the collapse= parameter.
+		 * @param collapse "work" to collapse editions, or null
+		 * @return whether to collapse
+		 * @throws WebApplicationException with BAD_REQUEST for other values
+		 */
+		protected static boolean parseCollapse(String collapse) {
+			if (collapse == null || collapse.isEmpty()) {
+				return false;
+			}
+			if (!"work".equals(collapse)) {
+				throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+						.entity("Unknown collapse mode: " + StringEscapeUtils.escapeHtml4(collapse)).build());
+			}
+			return true;
 		}
 
 		/**
 		 * Endpoint to return all stored Books in JSON format.
+		 * @param fields optional comma-separated list of fields to return, e.g. "isbn,title"
+		 * @param collapse optional "work" to return one edition per work, with an editions count
 		 * @throws RepositoryException
 		 */
         @Path("/")
         @GET
         @Produces(MediaType.APPLICATION_JSON)
-        public Collection<Book> listBooks() throws RepositoryException {
-            return Book.loadAll(getBooksNode());
+        public Collection<?> listBooks(@QueryParam("fields") String fields, @QueryParam("collapse") String collapse)
+                throws RepositoryException {
+            Set<String> projection = parseFields(fields);
+            boolean collapsed = parseCollapse(collapse);
+            Collection<String> properties = Book.propertiesFor(projection);
+            BooksModule module = getActive();
+            Node booksNode = getBooksNode();
+            Collection<Book> books;
+            try (RequestTrace.Span span = RequestTrace.span(RequestTrace.TRAVERSE)) {
+                if (module == null) {
+                    books = Book.loadAll(booksNode, properties);
+                }
+                else {
+                    // Loaded on worker threads, which are not traced
+                    books = module.getShardTraversal().loadAll(booksNode, properties);
+                    RequestTrace.count(RequestTrace.NODES, books.size());
+                }
+            }
+            return project(books, projection, collapsed);
         }
         
         /**
@@ -130,8 +912,12 @@ public class BooksModule implements DaemonModule {
        // @PUT 
         @Produces(MediaType.TEXT_PLAIN)
         public Response createSeedBooks() throws RepositoryException {
-        	Book.createSampleBooks(getBooksNode());
-        	systemSession.save();
+        	Node booksNode = getBooksNode();
+        	try (ShardLocks.Held locks = lockShards(null)) {
+        		List<String> isbns = Book.createSampleBooks(booksNode);
+        		saveSession();
+        		publishChanges(booksNode, isbns);
+        	}
         	return Response.ok().entity("3 books created").build();
         }
 
@@ -139,39 +925,187 @@ public class BooksModule implements DaemonModule {
          * Store a single new book in the repository. Since the storage location and contents are
          * fully deterministic based on the provided ISBN and other properties, this is idempotent
          * and PUT is appropriate.
-         * @return OK
+         * <p>
+         * Books carrying a version (in the payload, or via If-Match for a single book) are only
+         * stored if the stored book still has that version. Writers in this JVM are serialized per
+         * shard folder; batches that still lose a save race, e.g. against another cluster node, are
+         * retried with backoff, up to {@link #MAX_SAVE_ATTEMPTS} times.
+         * <p>
+         * In write-behind mode the books are only validated and queued, and the response is
+         * ACCEPTED with a receipt that can be checked at /books/receipts/{receipt}. Version
+         * conflicts then show up as a FAILED receipt.
+         * @param ifMatch optional ETag of the expected version, as returned by GET /books/{isbn}
+         * @param uriInfo request URI, for the location of a write-behind receipt
+         * @return OK, or PRECONDITION_FAILED on a version conflict, in which case nothing is stored
          * @throws RepositoryException
          */
         @Path("/")
         @PUT 
         @Consumes(MediaType.APPLICATION_JSON)
-        public Response storeBooks(List<Book> books) throws RepositoryException {
+        public Response storeBooks(List<Book> books, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+                @Context UriInfo uriInfo) throws RepositoryException {
+            if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+                if (books.size() != 1) {
+                    return Response.status(Status.BAD_REQUEST).entity("If-Match requires a single book").build();
+                }
+                books.get(0).setVersion(parseVersion(ifMatch));
+            }
+
+            BooksModule module = getActive();
+            if (module != null && module.getWriteBehindQueue() != null) {
+                return queueBooks(module.getWriteBehindQueue(), books, uriInfo);
+            }
+
+            List<String> isbns = new ArrayList<>(books.size());
             for (Book book : books) {
-                book.save(getBooksNode());
+                isbns.add(book.getISBN());
+            }
+            for (int attempt = 1; ; attempt++) {
+                try (ShardLocks.Held locks = lockShards(isbns)) {
+                    Node booksNode = getBooksNode();
+                    for (Book book : books) {
+                        book.save(booksNode);
+                    }
+                    saveSession();
+                    publishChanges(booksNode, isbns);
+                    return Response.ok().build();
+                }
+                catch (VersionConflictException e) {
+                    getSession().refresh(false);
+                    return Response.status(Status.PRECONDITION_FAILED).entity(e.getMessage()).build();
+                }
+                catch (InvalidItemStateException | ItemExistsException e) {
+                    // Another writer saved the same nodes first; start over from the current state
+                    getSession().refresh(false);
+                    if (attempt >= MAX_SAVE_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.debug("Save conflict on attempt {}, retrying: {}", attempt, e.getMessage());
+                    backoff(attempt);
+                }
             }
-        	systemSession.save();
-        	return Response.ok().build();
         }
 
         /**
-         * Lookup a single book in JSON format by its unique ISBN.
+         * Validate books and hand them to the write-behind queue.
+         * @return ACCEPTED with a receipt and its location, BAD_REQUEST for invalid books, or
+         *         SERVICE_UNAVAILABLE if the queue is full
+         */
+        protected Response queueBooks(WriteBehindQueue queue, List<Book> books, UriInfo uriInfo) {
+            for (Book book : books) {
+                try {
+                    book.validate();
+                }
+                catch (IllegalStateException e) {
+                    return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+                }
+            }
+            long receipt = queue.offer(books);
+            if (receipt < 0) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, 1)
+                        .entity("Write queue is full").build();
+            }
+            // Absolute, as a relative reference would resolve next to /books rather than below it
+            URI location = uriInfo.getBaseUriBuilder().path(BooksResource.class, "getReceipt").build(receipt);
+            return Response.status(Status.ACCEPTED).type(MediaType.APPLICATION_JSON_TYPE)
+                    .location(location).entity(receiptStatus(queue, receipt)).build();
+        }
+
+        /**
+         * Check on the processing of books stored in write-behind mode.
+         * @param receipt receipt returned by PUT /books
+         * @return JSON status of the receipt, or NOT_FOUND if write-behind mode is off or the receipt is unknown
+         */
+        @GET
+        @Path("/receipts/{receipt}")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response getReceipt(@PathParam("receipt") long receipt) {
+            BooksModule module = getActive();
+            WriteBehindQueue queue = module != null ? module.getWriteBehindQueue() : null;
+            if (queue == null || queue.getStatus(receipt) == WriteBehindQueue.Status.UNKNOWN) {
+                return Response.status(Status.NOT_FOUND).entity("No such receipt: " + receipt).build();
+            }
+            return Response.ok().entity(receiptStatus(queue, receipt)).build();
+        }
+
+        private static Map<String, Object> receiptStatus(WriteBehindQueue queue, long receipt) {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("receipt", receipt);
+            status.put("status", queue.getStatus(receipt));
+            return status;
+        }
+
+        /**
+         * Parse an If-Match header value holding a book version ETag.
+         * @throws WebApplicationException with BAD_REQUEST if the value is not a version
+         */
+        protected static Long parseVersion(String ifMatch) {
+            String value = ifMatch.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            value = value.replace("\"", "");
+            try {
+                return Long.valueOf(value);
+            }
+            catch (NumberFormatException e) {
+                throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+                        .entity("Invalid If-Match version: " + StringEscapeUtils.escapeHtml4(ifMatch)).build());
+            }
+        }
+
+        /**
+         * Sleep with exponential backoff and jitter before retrying a failed save.
+         */
+        protected static void backoff(int attempt) throws RepositoryException {
+            long delay = SAVE_BACKOFF_MILLIS << (attempt - 1);
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay + ThreadLocalRandom.current().nextLong(delay));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepositoryException("Interrupted while retrying save", e);
+            }
+        }
+
+        /**
+         * Lookup a single book in JSON format by its unique ISBN. Full books are served from the
+         * payload cache when it is enabled.
          * @param isbn ISBN of the desired book
+         * @param fields optional comma-separated list of fields to return, e.g. "isbn,title"
          * @return JSON representation of the book or NOT_FOUND
          * @throws RepositoryException
+         * @throws IOException if the book cannot be serialized for the payload cache
          */
         @GET
         @Path("/{isbn}")
         @Produces(MediaType.APPLICATION_JSON)
-        public Response findByISBN(@PathParam("isbn") String isbn) throws RepositoryException {
-        	Book book = Book.loadByISBN(getBooksNode(), isbn);
-        	if (book != null) {
-        		return Response.ok().entity(book).build();
+        public Response findByISBN(@PathParam("isbn") String isbn, @QueryParam("fields") String fields) throws RepositoryException, IOException {
+        	Set<String> projection = parseFields(fields);
+        	BooksModule module = getActive();
+        	if (module != null) {
+        		module.getStats().getIsbns().record(Book.sanitizeISBN(isbn));
+        	}
+        	if (projection == null && Book.getISBNKey(isbn) > 0 && module != null && module.getPayloadCache() != null) {
+        		BookPayloadCache.Payload payload = module.loadPayload(getSession(), isbn);
+        		if (payload != null) {
+        			return Response.ok(payload.getJson(), MediaType.APPLICATION_JSON_TYPE)
+        					.tag(new EntityTag(String.valueOf(payload.getVersion()))).build();
+        		}
         	}
         	else {
-        		// Sanitize input before producing it as output
-        		isbn = StringEscapeUtils.escapeHtml4(isbn);
-        		return Response.status(Status.NOT_FOUND).entity("No book found with ISBN: "+isbn).build();
+        		Book book = loadBook(isbn, Book.propertiesFor(projection));
+        		if (book != null) {
+        			return Response.ok().entity(projection == null ? book : book.project(projection))
+        					.tag(new EntityTag(String.valueOf(book.getVersion()))).build();
+        		}
         	}
+        	if (module != null) {
+        		module.getStats().getMissed().record(Book.sanitizeISBN(isbn));
+        	}
+        	// Sanitize input before producing it as output
+        	isbn = StringEscapeUtils.escapeHtml4(isbn);
+        	return Response.status(Status.NOT_FOUND).entity("No book found with ISBN: "+isbn).build();
         }
 
         /**
@@ -184,8 +1118,15 @@ public class BooksModule implements DaemonModule {
         @Path("/{isbn}")
         @Produces(MediaType.APPLICATION_JSON)
         public Response removeByISBN(@PathParam("isbn") String isbn) throws RepositoryException {
-        	boolean removed = Book.removeByISBN(getBooksNode(), isbn);
-        	systemSession.save();
+        	Node booksNode = getBooksNode();
+        	boolean removed;
+        	try (ShardLocks.Held locks = lockShards(Collections.singletonList(Book.sanitizeISBN(isbn)))) {
+        		removed = Book.removeByISBN(booksNode, isbn);
+        		saveSession();
+        		if (removed) {
+        			publishChanges(booksNode, Collections.singletonList(isbn));
+        		}
+        	}
         	
     		// Sanitize input before producing it as output
     		isbn = StringEscapeUtils.escapeHtml4(isbn);
@@ -197,32 +1138,273 @@ public class BooksModule implements DaemonModule {
         	}
         }
         
+        /**
+         * Find books by author, using the in-memory author index.
+         * @param name author name, or the start of one for prefix matching
+         * @param match "exact" (the default) or "prefix"; both ignore case, accents and punctuation
+         * @param offset number of matches to skip
+         * @param limit maximum number of books to return, at most {@link #MAX_PAGE_SIZE}
+         * @param fields optional comma-separated list of fields to return, e.g. "isbn,title"
+         * @return a JSON array of books ordered by author name and ISBN, possibly empty
+         * @throws RepositoryException
+         */
+        @GET
+        @Path("/by-author/{name}")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response findByAuthor(@PathParam("name") String name,
+                @QueryParam("match") @DefaultValue("exact") String match,
+                @QueryParam("offset") @DefaultValue("0") int offset,
+                @QueryParam("limit") @DefaultValue("20") int limit,
+                @QueryParam("fields") String fields) throws RepositoryException {
+            Set<String> projection = parseFields(fields);
+            BooksModule module = getActive();
+            if (module == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).entity("Author index not available").build();
+            }
+            offset = Math.max(0, offset);
+            limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+            List<String> isbns;
+            if ("exact".equals(match)) {
+                isbns = module.getAuthorIndex().findExact(name, offset, limit);
+            }
+            else if ("prefix".equals(match)) {
+                isbns = module.getAuthorIndex().findPrefix(name, offset, limit);
+            }
+            else {
+                return Response.status(Status.BAD_REQUEST).entity("match must be exact or prefix").build();
+            }
+            return Response.ok().entity(project(loadBooks(isbns, projection), projection)).build();
+        }
+
+        /**
+         * Find books published within a range of days, oldest first, using the in-memory
+         * publication date index.
+         * @param from first publication date as yyyy-MM-dd, inclusive; unbounded if omitted
+         * @param to last publication date as yyyy-MM-dd, inclusive; unbounded if omitted
+         * @param cursor cursor returned with the previous page, to continue after it
+         * @param limit maximum number of books to return, at most {@link #MAX_PAGE_SIZE}
+         * @param fields optional comma-separated list of fields to return, e.g. "isbn,title"
+         * @return a JSON object with the books and the cursor of the next page, which is null on
+         *         the last page; BAD_REQUEST for malformed dates or cursors
+         * @throws RepositoryException
+         */
+        @GET
+        @Path("/published")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response findByPublicationDate(@QueryParam("from") String from, @QueryParam("to") String to,
+                @QueryParam("cursor") String cursor,
+                @QueryParam("limit") @DefaultValue("20") int limit,
+                @QueryParam("fields") String fields) throws RepositoryException {
+            Set<String> projection = parseFields(fields);
+            BooksModule module = getActive();
+            if (module == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).entity("Publication date index not available").build();
+            }
+            limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            List<PublicationDateIndex.Key> keys = module.getPublicationDateIndex().findAscending(
+                    parseDay(from, Long.MIN_VALUE), parseDay(to, Long.MAX_VALUE), parseCursor(cursor), limit + 1);
+            return Response.ok().entity(datePage(keys, limit, projection)).build();
+        }
+
+        /**
+         * Books published in the last days up to and including today, newest first. Books with a
+         * future publication date are not included.
+         * @param days number of days to look back, at most 3660
+         * @param cursor cursor returned with the previous page, to continue after it
+         * @param limit maximum number of books to return, at most {@link #MAX_PAGE_SIZE}
+         * @param fields optional comma-separated list of fields to return, e.g. "isbn,title"
+         * @return a JSON object with the books and the cursor of the next page, which is null on
+         *         the last page
+         * @throws RepositoryException
+         */
+        @GET
+        @Path("/new-releases")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response findNewReleases(@QueryParam("days") @DefaultValue("30") int days,
+                @QueryParam("cursor") String cursor,
+                @QueryParam("limit") @DefaultValue("20") int limit,
+                @QueryParam("fields") String fields) throws RepositoryException {
+            Set<String> projection = parseFields(fields);
+            BooksModule module = getActive();
+            if (module == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).entity("Publication date index not available").build();
+            }
+            days = Math.max(1, Math.min(days, 3660));
+            limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            long today = LocalDate.now().toEpochDay();
+            List<PublicationDateIndex.Key> keys = module.getPublicationDateIndex().findDescending(
+                    today - days + 1, today, parseCursor(cursor), limit + 1);
+            return Response.ok().entity(datePage(keys, limit, projection)).build();
+        }
+
+        /**
+         * @param keys index entries, one more than the page size if there is a next page
+         * @return the books of the page and the cursor of the next page
+         */
+        protected Map<String, Object> datePage(List<PublicationDateIndex.Key> keys, int limit, Set<String> projection)
+                throws RepositoryException {
+            List<String> isbns = new ArrayList<>(Math.min(keys.size(), limit));
+            for (PublicationDateIndex.Key key : keys.subList(0, Math.min(keys.size(), limit))) {
+                isbns.add(key.getIsbn());
+            }
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("books", project(loadBooks(isbns, projection), projection));
+            page.put("cursor", keys.size() > limit ? keys.get(limit - 1).toString() : null);
+            return page;
+        }
+
+        /**
+         * Parse an optional yyyy-MM-dd date to an epoch day.
+         * @throws WebApplicationException with BAD_REQUEST if the value is not a date
+         */
+        protected static long parseDay(String date, long defaultDay) {
+            if (date == null || date.trim().isEmpty()) {
+                return defaultDay;
+            }
+            try {
+                return LocalDate.parse(date.trim()).toEpochDay();
+            }
+            catch (DateTimeParseException e) {
+                throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+                        .entity("Invalid date, expected yyyy-MM-dd: " + StringEscapeUtils.escapeHtml4(date)).build());
+            }
+        }
+
+        /**
+         * Parse an optional page cursor.
+         * @throws WebApplicationException with BAD_REQUEST if the cursor is malformed
+         */
+        protected static PublicationDateIndex.Key parseCursor(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return null;
+            }
+            try {
+                return PublicationDateIndex.Key.parse(cursor);
+            }
+            catch (IllegalArgumentException e) {
+                throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+                        .entity("Invalid cursor: " + StringEscapeUtils.escapeHtml4(cursor)).build());
+            }
+        }
+
+        /**
+         * Typeahead suggestions for titles and authors, served from the in-memory suggest index
+         * without touching the repository.
+         * @param prefix the text typed so far
+         * @param limit maximum number of suggestions, at most {@link #MAX_PAGE_SIZE}
+         * @return a JSON array of ISBN and title pairs, best matches first
+         */
+        @GET
+        @Path("/suggest")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response suggest(@QueryParam("prefix") String prefix, @QueryParam("limit") @DefaultValue("10") int limit) {
+            BooksModule module = getActive();
+            if (module == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).entity("Suggest index not available").build();
+            }
+            limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            return Response.ok().entity(module.getSuggestIndex().suggest(prefix, limit)).build();
+        }
+
         /**
          * Search for a book by text matching on any field using default sort and data limits.
+         * Results of repeated queries are served from the query cache, which only holds ISBNs, so
+         * the books themselves are always read in their current state.
          * @param qString the search query string for a simple text contains match
+         * @param fields optional comma-separated list of fields to return, e.g. "isbn,title"
+         * @param collapse optional "work" to return one edition per work, with an editions count
          * @return a JSON array of matching books, possibly empty and in no particular order
          * @throws RepositoryException
          */
         @GET
         @Path("/search")
         @Produces(MediaType.APPLICATION_JSON)
-        public Collection<Book> findByQuery(@QueryParam("q") String qString) throws RepositoryException {
-        	QueryManager qm = systemSession.getWorkspace().getQueryManager();
-        	
-        	// Create and execute the query
-        	// Filter out folders by requiring an ISBN property
-        	//  and @"+Book.ISBN+"
-        	Query q = qm.createQuery("//books//*[jcr:contains(.,'"+qString+"') and @"+Book.ISBN+"]", "xpath");
-        	QueryResult qr = q.execute();
-        	
-        	// Iterate and accumulate results
-        	LinkedList<Book> books = new LinkedList<>();
-        	for (NodeIterator bookNodes = qr.getNodes(); bookNodes.hasNext();) {
-        		Node bookNode = bookNodes.nextNode();
-        		books.add(new Book(bookNode));
+        public Collection<?> findByQuery(@QueryParam("q") String qString, @QueryParam("fields") String fields,
+                @QueryParam("collapse") String collapse) throws RepositoryException {
+        	Set<String> projection = parseFields(fields);
+        	boolean collapsed = parseCollapse(collapse);
+        	Collection<String> properties = Book.propertiesFor(projection);
+        	BooksModule module = getActive();
+        	if (module == null) {
+        		return project(executeQuery(getSession(), qString, properties, null), projection, collapsed);
         	}
-        	
-        	return books;
+
+        	String key = QueryCache.normalize(qString);
+        	module.getStats().getQueries().record(key);
+        	QueryCache cache = module.getQueryCache();
+        	List<String> isbns = cache.get(key);
+        	if (isbns != null) {
+        		return project(loadBooks(isbns, projection), projection, collapsed);
+        	}
+        	long generation = cache.getGeneration();
+        	isbns = new ArrayList<>();
+        	List<Book> books = executeQuery(getSession(), qString, properties, isbns);
+        	cache.put(key, isbns, generation);
+        	return project(books, projection, collapsed);
+        }
+
+        /**
+         * Request statistics: totals and heavy hitters among requested ISBNs, queries and unknown
+         * ISBNs, along with cache figures. Counts are estimates that may be slightly too high.
+         * @param limit number of heavy hitters per kind, at most {@link #MAX_PAGE_SIZE}
+         * @return JSON statistics, or SERVICE_UNAVAILABLE if the module is not running
+         */
+        @GET
+        @Path("/stats")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response stats(@QueryParam("limit") @DefaultValue("20") int limit) {
+            BooksModule module = getActive();
+            if (module == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).entity("Statistics not available").build();
+            }
+            limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            return Response.ok().entity(module.getStats().snapshot(limit)).build();
+        }
+
+        /**
+         * Health check for load balancers, reporting the status cached by the {@link HealthProbe}
+         * without touching the repository.
+         * @return OK while the probe reads successfully, or else SERVICE_UNAVAILABLE
+         */
+        @GET
+        @Path("/health")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response health() {
+            BooksModule module = getActive();
+            boolean healthy = module != null && module.getHealthProbe().isHealthy();
+            return probeResponse(module, healthy);
+        }
+
+        /**
+         * Readiness check for load balancers. The module is ready once its indexes are built and
+         * the startup warm-up is done, as long as it is healthy and the write-behind queue has
+         * room. Like {@link #health()}, it only reports cached status. While building the indexes
+         * fails, the status reports the failure as indexError.
+         * @return OK, or SERVICE_UNAVAILABLE while starting or unhealthy
+         */
+        @GET
+        @Path("/ready")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response ready() {
+            BooksModule module = getActive();
+            boolean ready = module != null && module.getHealthProbe().isReady();
+            return probeResponse(module, ready);
+        }
+
+        private static Response probeResponse(BooksModule module, boolean ok) {
+            Map<String, Object> status;
+            if (module != null) {
+                status = module.getHealthProbe().snapshot();
+            }
+            else {
+                status = new LinkedHashMap<>();
+                status.put("healthy", false);
+                status.put("ready", false);
+            }
+            // Never cached by intermediaries, so every poll sees the current status
+            return Response.status(ok ? Status.OK : Status.SERVICE_UNAVAILABLE).entity(status)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store").build();
         }
     }
 }
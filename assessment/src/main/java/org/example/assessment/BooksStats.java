@@ -0,0 +1,259 @@
+package org.example.assessment;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Request statistics of the books module: heavy hitters among requested ISBNs,
+ * search queries and requests for unknown ISBNs. Exposed at GET /books/stats
+ * and through JMX, together with the cache figures.
+ * <p>
+ * The ISBN and query counts are saved at shutdown, so that the next start can
+ * warm up with the previous run's most requested keys.
+ */
+public class BooksStats implements BooksStatsMBean {
+
+	static final String OBJECT_NAME = "org.example.assessment:type=BooksStats";
+
+	private static final String ISBN_TYPE = "isbn";
+	private static final String QUERY_TYPE = "query";
+
+	private final BooksModule module;
+	private final HeavyHitters isbns;
+	private final HeavyHitters queries;
+	private final HeavyHitters misses;
+
+	/**
+	 * @param module the module whose caches are reported
+	 * @param topK number of heavy hitters tracked per kind
+	 */
+	public BooksStats(BooksModule module, int topK) {
+		this.module = module;
+		this.isbns = new HeavyHitters(topK);
+		this.queries = new HeavyHitters(topK);
+		this.misses = new HeavyHitters(topK);
+	}
+
+	public HeavyHitters getIsbns() {
+		return isbns;
+	}
+
+	public HeavyHitters getQueries() {
+		return queries;
+	}
+
+	/**
+	 * @return requests for ISBNs that were not found
+	 */
+	public HeavyHitters getMissed() {
+		return misses;
+	}
+
+	/**
+	 * @param limit number of heavy hitters per kind
+	 * @return the statistics as a JSON-friendly map
+	 */
+	public Map<String, Object> snapshot(int limit) {
+		Map<String, Object> requests = new LinkedHashMap<>();
+		requests.put("isbn", isbns.getTotal());
+		requests.put("query", queries.getTotal());
+		requests.put("miss", misses.getTotal());
+
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("requests", requests);
+		snapshot.put("topIsbns", isbns.top(limit));
+		snapshot.put("topQueries", queries.top(limit));
+		snapshot.put("topMisses", misses.top(limit));
+
+		QueryCache queryCache = module.getQueryCache();
+		Map<String, Object> search = new LinkedHashMap<>();
+		search.put("size", queryCache.size());
+		search.put("hits", queryCache.getHits());
+		search.put("misses", queryCache.getMisses());
+		search.put("hitRatio", queryCache.getHitRatio());
+		search.put("evictions", queryCache.getEvictions());
+		search.put("invalidations", queryCache.getInvalidations());
+		snapshot.put("queryCache", search);
+
+		BookPayloadCache payloadCache = module.getPayloadCache();
+		if (payloadCache != null) {
+			Map<String, Object> payloads = new LinkedHashMap<>();
+			payloads.put("size", payloadCache.size());
+			payloads.put("allocated", payloadCache.getAllocated());
+			payloads.put("hits", payloadCache.getHits());
+			payloads.put("misses", payloadCache.getMisses());
+			payloads.put("hitRatio", getPayloadCacheHitRatio());
+			payloads.put("evictions", payloadCache.getEvictions());
+			snapshot.put("payloadCache", payloads);
+		}
+		if (module.getWriteBehindQueue() != null) {
+			snapshot.put("writeBehindQueue", module.getWriteBehindQueue().size());
+		}
+
+		Map<String, Object> changes = new LinkedHashMap<>();
+		changes.put("observed", module.getChangeStamps().getChanges());
+		changes.put("externalEvents", module.getChangeDispatcher().getExternalEvents());
+		snapshot.put("changes", changes);
+		if (module.getMaintenance() != null) {
+			snapshot.put("maintenance", module.getMaintenance().snapshot());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Write the ISBN and query heavy hitters as "type TAB count TAB key" lines, replacing the
+	 * file atomically.
+	 * @param file the stats file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+			write(writer, ISBN_TYPE, isbns);
+			write(writer, QUERY_TYPE, queries);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void write(BufferedWriter writer, String type, HeavyHitters hitters) throws IOException {
+		for (HeavyHitters.Entry entry : hitters.top(Integer.MAX_VALUE)) {
+			writer.write(type + "\t" + entry.getCount() + "\t" + entry.getKey());
+			writer.newLine();
+		}
+	}
+
+	/**
+	 * Restore counts saved by {@link #save(File)}. Malformed lines are skipped.
+	 * @param file the stats file; nothing happens if it doesn't exist
+	 * @throws IOException
+	 */
+	public void load(File file) throws IOException {
+		if (!file.isFile()) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			for (String line; (line = reader.readLine()) != null;) {
+				String[] fields = line.split("\t", 3);
+				if (fields.length < 3 || fields[2].isEmpty()) {
+					continue;
+				}
+				HeavyHitters hitters = ISBN_TYPE.equals(fields[0]) ? isbns : QUERY_TYPE.equals(fields[0]) ? queries : null;
+				try {
+					if (hitters != null) {
+						hitters.add(fields[2], Long.parseLong(fields[1]));
+					}
+				}
+				catch (NumberFormatException e) {
+					// skip
+				}
+			}
+		}
+	}
+
+	/**
+	 * Register with the platform MBean server.
+	 * @throws JMException
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/**
+	 * Unregister from the platform MBean server.
+	 * @throws JMException
+	 */
+	public void unregister() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+	}
+
+	@Override
+	public long getIsbnRequests() {
+		return isbns.getTotal();
+	}
+
+	@Override
+	public long getQueryRequests() {
+		return queries.getTotal();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.getTotal();
+	}
+
+	@Override
+	public String[] getTopIsbns() {
+		return format(isbns.top(20));
+	}
+
+	@Override
+	public String[] getTopQueries() {
+		return format(queries.top(20));
+	}
+
+	@Override
+	public String[] getTopMisses() {
+		return format(misses.top(20));
+	}
+
+	private static String[] format(List<HeavyHitters.Entry> entries) {
+		String[] formatted = new String[entries.size()];
+		for (int i = 0; i < formatted.length; i++) {
+			formatted[i] = entries.get(i).toString();
+		}
+		return formatted;
+	}
+
+	@Override
+	public double getQueryCacheHitRatio() {
+		return module.getQueryCache().getHitRatio();
+	}
+
+	@Override
+	public int getQueryCacheSize() {
+		return module.getQueryCache().size();
+	}
+
+	@Override
+	public double getPayloadCacheHitRatio() {
+		BookPayloadCache cache = module.getPayloadCache();
+		if (cache == null) {
+			return 0;
+		}
+		long hits = cache.getHits();
+		long lookups = hits + cache.getMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public int getPayloadCacheSize() {
+		return module.getPayloadCache() != null ? module.getPayloadCache().size() : 0;
+	}
+
+	@Override
+	public long getPayloadCacheAllocated() {
+		return module.getPayloadCache() != null ? module.getPayloadCache().getAllocated() : 0;
+	}
+
+	@Override
+	public int getWriteBehindQueueSize() {
+		return module.getWriteBehindQueue() != null ? module.getWriteBehindQueue().size() : 0;
+	}
+
+	@Override
+	public long getExternalEvents() {
+		return module.getChangeDispatcher().getExternalEvents();
+	}
+}
@@ -0,0 +1,46 @@
+package org.example.assessment;
+
+/**
+ * JMX view of the books module's request statistics and caches, registered as
+ * {@value BooksStats#OBJECT_NAME}.
+ */
+public interface BooksStatsMBean {
+
+	long getIsbnRequests();
+
+	long getQueryRequests();
+
+	long getMisses();
+
+	/**
+	 * @return most requested ISBNs as "isbn=count"
+	 */
+	String[] getTopIsbns();
+
+	/**
+	 * @return most frequent normalized queries as "query=count"
+	 */
+	String[] getTopQueries();
+
+	/**
+	 * @return most requested unknown ISBNs as "isbn=count"
+	 */
+	String[] getTopMisses();
+
+	double getQueryCacheHitRatio();
+
+	int getQueryCacheSize();
+
+	double getPayloadCacheHitRatio();
+
+	int getPayloadCacheSize();
+
+	long getPayloadCacheAllocated();
+
+	int getWriteBehindQueueSize();
+
+	/**
+	 * @return events received for changes made by other cluster nodes
+	 */
+	long getExternalEvents();
+}
@@ -0,0 +1,67 @@
+package org.example.assessment;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Change tracking of this cluster node: every book change this node observes,
+ * whether made locally or replayed from the cluster journal, gives the book a
+ * new stamp from a node-local sequence. Caches remember the stamp a book had
+ * before they loaded it and only serve an entry while the stamp is unchanged,
+ * so a read that overlapped a change can never be served afterwards.
+ * <p>
+ * Stamps are kept per slot rather than per book, in constant memory. Books
+ * sharing a slot invalidate each other's cache entries, which costs a reload
+ * but never returns stale data. Must be registered with the
+ * {@link BookChangeDispatcher} before any cache that uses it.
+ */
+public class ChangeStamps implements BookChangeListener {
+
+	private final AtomicLongArray stamps;
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * @param slots number of stamps, rounded up to a power of two
+	 */
+	public ChangeStamps(int slots) {
+		this.stamps = new AtomicLongArray(Integer.highestOneBit(Math.max(1, slots - 1)) << 1);
+	}
+
+	/**
+	 * @param key key from {@link Book#getISBNKey(String)}
+	 * @return the current stamp of the book, to be compared with a later call
+	 */
+	public long get(long key) {
+		return stamps.get(slot(key));
+	}
+
+	/**
+	 * Record a change of a book.
+	 * @param isbn ISBN in any notation
+	 */
+	public void changed(String isbn) {
+		stamps.set(slot(Book.getISBNKey(isbn)), sequence.incrementAndGet());
+	}
+
+	@Override
+	public void bookSaved(Book book) {
+		changed(book.getISBN());
+	}
+
+	@Override
+	public void bookRemoved(String isbn) {
+		changed(isbn);
+	}
+
+	/**
+	 * @return number of changes observed since startup
+	 */
+	public long getChanges() {
+		return sequence.get();
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & (stamps.length() - 1);
+	}
+}
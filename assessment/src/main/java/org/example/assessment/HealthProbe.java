@@ -0,0 +1,134 @@
+package org.example.assessment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background probe behind the health and readiness endpoints. At a fixed
+ * interval it logs in and reads the books root, and the endpoints only report
+ * the outcome, so load balancers may poll them as often as they like without
+ * adding repository load.
+ * <p>
+ * The node is healthy while the last successful read is recent, so a probe
+ * that fails, or hangs in a login, drains the node within the maximum read
+ * age. It is ready when it is healthy, the indexes are built and warmed up,
+ * and the write-behind queue has room.
+ */
+public class HealthProbe {
+
+	private static final Logger log = LoggerFactory.getLogger(HealthProbe.class);
+
+	private final BooksModule module;
+	private final long maxReadAge;
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Outcome of the last probe; written by the probe thread only
+	 */
+	private volatile long lastProbe;
+	private volatile long lastRead;
+	private volatile long loginMillis;
+	private volatile long readMillis;
+	private volatile String error;
+
+	/**
+	 * @param module the module to probe
+	 * @param interval milliseconds between two probes
+	 * @param maxReadAge milliseconds after the last successful read at which the node becomes unhealthy
+	 */
+	public HealthProbe(BooksModule module, long interval, long maxReadAge) {
+		this.module = module;
+		this.maxReadAge = maxReadAge;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(BooksModule.namedThreadFactory("books-health-probe"));
+		scheduler.scheduleWithFixedDelay(this::probe, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Log in and read the books root, recording the timings or the failure.
+	 */
+	void probe() {
+		long start = System.nanoTime();
+		Session session = null;
+		try {
+			session = module.loginSystemSession();
+			long loggedIn = System.nanoTime();
+			module.getBooksRoot(session).hasNodes();
+			loginMillis = TimeUnit.NANOSECONDS.toMillis(loggedIn - start);
+			readMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loggedIn);
+			lastRead = System.currentTimeMillis();
+			if (error != null) {
+				log.info("Health probe recovered");
+			}
+			error = null;
+		}
+		catch (RepositoryException | RuntimeException e) {
+			if (error == null) {
+				log.warn("Health probe failed", e);
+			}
+			error = e.toString();
+		}
+		finally {
+			if (session != null) {
+				session.logout();
+			}
+			lastProbe = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @return whether the last successful read is recent enough
+	 */
+	public boolean isHealthy() {
+		long read = lastRead;
+		return read > 0 && System.currentTimeMillis() - read <= maxReadAge;
+	}
+
+	/**
+	 * @return whether the node should receive traffic
+	 */
+	public boolean isReady() {
+		WriteBehindQueue queue = module.getWriteBehindQueue();
+		return isHealthy() && module.isReady() && (queue == null || queue.size() < queue.getCapacity());
+	}
+
+	/**
+	 * @return the cached status, as a JSON-friendly map
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("healthy", isHealthy());
+		status.put("ready", isReady());
+		status.put("warmedUp", module.isReady());
+		status.put("lastProbe", lastProbe);
+		status.put("lastRead", lastRead);
+		status.put("loginMillis", loginMillis);
+		status.put("readMillis", readMillis);
+		if (error != null) {
+			status.put("error", error);
+		}
+		String indexError = module.getIndexError();
+		if (indexError != null) {
+			status.put("indexError", indexError);
+		}
+		ForkJoinPool traversalPool = module.getTraversalPool();
+		status.put("traversalQueue", traversalPool.getQueuedSubmissionCount() + traversalPool.getQueuedTaskCount());
+		if (module.getWriteBehindQueue() != null) {
+			status.put("writeBehindQueue", module.getWriteBehindQueue().size());
+		}
+		return status;
+	}
+}
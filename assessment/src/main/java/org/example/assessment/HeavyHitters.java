@@ -0,0 +1,200 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate request counts for an unbounded set of keys in constant memory:
+ * a count-min sketch estimates the count of any key, and the k keys with the
+ * highest estimates are tracked by name. Estimates never undercount; they
+ * overcount by at most about total / {@link #WIDTH} with high probability.
+ * <p>
+ * Recording is lock-free unless the key is, or is about to become, one of the
+ * top k.
+ */
+public class HeavyHitters {
+
+	/**
+	 * Sketch dimensions: 4 rows of 4096 counters, 128 KB per instance
+	 */
+	static final int DEPTH = 4;
+	static final int WIDTH = 4096;
+
+	/**
+	 * A key and its estimated count.
+	 */
+	public static class Entry implements Comparable<Entry> {
+		private final String key;
+		private final long count;
+
+		Entry(String key, long count) {
+			this.key = key;
+			this.count = count;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Ascending by count, then key
+		 */
+		@Override
+		public int compareTo(Entry other) {
+			int c = Long.compare(count, other.count);
+			return c != 0 ? c : key.compareTo(other.key);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Entry && compareTo((Entry) o) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() * 31 + Long.hashCode(count);
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + count;
+		}
+	}
+
+	private final int k;
+	private final AtomicLongArray sketch = new AtomicLongArray(DEPTH * WIDTH);
+	private final LongAdder total = new LongAdder();
+
+	/**
+	 * Tracked keys with their counts, by key and ordered by count. Guarded by this.
+	 */
+	private final Map<String, Entry> top = new HashMap<>();
+	private final TreeSet<Entry> ranking = new TreeSet<>();
+
+	/**
+	 * Lowest count among the top k once it is full, for the lock-free fast path
+	 */
+	private volatile long threshold;
+
+	/**
+	 * @param k number of heavy hitters to track by name
+	 */
+	public HeavyHitters(int k) {
+		this.k = k;
+	}
+
+	/**
+	 * Count one request for a key.
+	 * @param key the key
+	 */
+	public void record(String key) {
+		add(key, 1);
+	}
+
+	/**
+	 * Add to the count of a key, e.g. when restoring saved counts.
+	 * @param key the key
+	 * @param count amount to add
+	 */
+	public void add(String key, long count) {
+		total.add(count);
+		long estimate = Long.MAX_VALUE;
+		int h1 = key.hashCode();
+		int h2 = mix(h1);
+		for (int row = 0; row < DEPTH; row++) {
+			int column = ((h1 + row * h2) & 0x7FFFFFFF) % WIDTH;
+			estimate = Math.min(estimate, sketch.addAndGet(row * WIDTH + column, count));
+		}
+		if (estimate > threshold) {
+			offer(key, estimate);
+		}
+	}
+
+	private synchronized void offer(String key, long estimate) {
+		Entry previous = top.get(key);
+		if (previous != null) {
+			ranking.remove(previous);
+		}
+		else if (top.size() >= k) {
+			Entry lowest = ranking.first();
+			if (estimate <= lowest.count) {
+				return;
+			}
+			ranking.remove(lowest);
+			top.remove(lowest.key);
+		}
+		Entry entry = new Entry(key, estimate);
+		top.put(key, entry);
+		ranking.add(entry);
+		threshold = top.size() >= k ? ranking.first().count : 0;
+	}
+
+	/**
+	 * @param key the key
+	 * @return the estimated count of the key
+	 */
+	public long estimate(String key) {
+		long estimate = Long.MAX_VALUE;
+		int h1 = key.hashCode();
+		int h2 = mix(h1);
+		for (int row = 0; row < DEPTH; row++) {
+			estimate = Math.min(estimate, sketch.get(row * WIDTH + ((h1 + row * h2) & 0x7FFFFFFF) % WIDTH));
+		}
+		return estimate;
+	}
+
+	/**
+	 * @param n maximum number of entries
+	 * @return the tracked keys with the highest counts, highest first
+	 */
+	public synchronized List<Entry> top(int n) {
+		List<Entry> entries = new ArrayList<>(Math.min(n, ranking.size()));
+		for (Entry entry : ranking.descendingSet()) {
+			if (entries.size() >= n) {
+				break;
+			}
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 * @param n maximum number of keys
+	 * @return the tracked keys with the highest counts, highest first
+	 */
+	public List<String> topKeys(int n) {
+		List<String> keys = new ArrayList<>();
+		for (Entry entry : top(n)) {
+			keys.add(entry.getKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * @return total number of recorded requests
+	 */
+	public long getTotal() {
+		return total.sum();
+	}
+
+	/**
+	 * Second hash for the sketch rows, independent enough from String.hashCode()
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h | 1;
+	}
+}
@@ -0,0 +1,323 @@
+package org.example.assessment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index from ISBN to the identifier of the book node, kept in a
+ * memory-mapped file so that lookups by ISBN are fast right after a restart,
+ * before the repository's own caches are warm.
+ * <p>
+ * The file is a fixed-size open-addressing hash table of 32-byte slots: ISBN,
+ * node UUID and a CRC of both. A header records whether the module shut down
+ * cleanly; after a crash, or if any slot fails its checksum, the file is
+ * cleared and refilled from the repository. Entries are hints only: every
+ * lookup is verified against the node it resolves to, and a wrong entry is
+ * dropped.
+ */
+public class IsbnNodeIndex implements BookChangeListener {
+
+	private static final Logger log = LoggerFactory.getLogger(IsbnNodeIndex.class);
+
+	private static final int MAGIC = 0x424B4958;
+	private static final int FORMAT = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 32;
+
+	/**
+	 * Header field offsets
+	 */
+	private static final int MAGIC_OFFSET = 0;
+	private static final int FORMAT_OFFSET = 4;
+	private static final int SLOTS_OFFSET = 8;
+	private static final int STATE_OFFSET = 12;
+
+	private static final int STATE_OPEN = 0;
+	private static final int STATE_CLEAN = 1;
+
+	private final RandomAccessFile file;
+	private final FileLock fileLock;
+	private final MappedByteBuffer buffer;
+	private final int slots;
+
+	/**
+	 * Whether the existing contents could be used after opening
+	 */
+	private final boolean warm;
+
+	/**
+	 * Number of used slots. Guarded by this.
+	 */
+	private int size;
+	private boolean fullWarned;
+
+	/**
+	 * Open or create the index file. The file is locked, so that only one repository uses it.
+	 * @param path location of the index file
+	 * @param slots number of slots; at most three quarters of them are used
+	 * @return the index, or null if the file is in use by another process
+	 * @throws IOException
+	 */
+	public static IsbnNodeIndex open(File path, int slots) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			FileLock fileLock = file.getChannel().tryLock();
+			if (fileLock == null) {
+				file.close();
+				return null;
+			}
+			return new IsbnNodeIndex(file, fileLock, slots);
+		}
+		catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private IsbnNodeIndex(RandomAccessFile file, FileLock fileLock, int slots) throws IOException {
+		this.file = file;
+		this.fileLock = fileLock;
+		this.slots = slots;
+		long length = HEADER_SIZE + (long) slots * SLOT_SIZE;
+		boolean sameLayout = file.length() == length;
+		file.setLength(length);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+
+		boolean usable = sameLayout && buffer.getInt(MAGIC_OFFSET) == MAGIC && buffer.getInt(FORMAT_OFFSET) == FORMAT
+				&& buffer.getInt(SLOTS_OFFSET) == slots && buffer.getInt(STATE_OFFSET) == STATE_CLEAN
+				&& verifySlots();
+		if (!usable) {
+			clear();
+		}
+		warm = usable;
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(FORMAT_OFFSET, FORMAT);
+		buffer.putInt(SLOTS_OFFSET, slots);
+		buffer.putInt(STATE_OFFSET, STATE_OPEN);
+		buffer.force();
+	}
+
+	/**
+	 * Check every used slot and count them.
+	 * @return false if any slot is corrupt
+	 */
+	private boolean verifySlots() {
+		int used = 0;
+		for (int i = 0; i < slots; i++) {
+			if (buffer.getLong(offset(i)) != 0) {
+				if (!checksumValid(i)) {
+					log.warn("ISBN index slot {} is corrupt, rebuilding the index", i);
+					return false;
+				}
+				used++;
+			}
+		}
+		size = used;
+		return true;
+	}
+
+	private void clear() {
+		for (int i = 0; i < slots; i++) {
+			buffer.putLong(offset(i), 0);
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return true if the index was loaded from a cleanly closed file, false if it started empty
+	 */
+	public boolean isWarm() {
+		return warm;
+	}
+
+	/**
+	 * Resolve a book node by ISBN through the index.
+	 * @param session session through which the node is returned
+	 * @param isbn ISBN in any notation
+	 * @return the book node, or null if the ISBN is not indexed or its entry is outdated
+	 * @throws RepositoryException
+	 */
+	public Node findBookNode(Session session, String isbn) throws RepositoryException {
+		String digits = Book.sanitizeISBN(isbn);
+		long key = Book.getISBNKey(digits);
+		String identifier = key > 0 ? get(key) : null;
+		if (identifier == null) {
+			return null;
+		}
+		try {
+			// Compare the ISBNs themselves, not just their keys
+			Node node = session.getNodeByIdentifier(identifier);
+			if (node.getPath().startsWith(BooksModule.BOOKS_PATH + "/") && node.hasProperty(Book.ISBN)
+					&& digits.equals(Book.sanitizeISBN(node.getProperty(Book.ISBN).getString()))) {
+				return node;
+			}
+		}
+		catch (ItemNotFoundException e) {
+			// removed without the index noticing
+		}
+		remove(key);
+		return null;
+	}
+
+	/**
+	 * @return the node identifier for the key, or null
+	 */
+	String get(long key) {
+		for (int i = slot(key), probes = 0; probes < slots; i = (i + 1) % slots, probes++) {
+			long stored = buffer.getLong(offset(i));
+			if (stored == 0) {
+				return null;
+			}
+			if (stored == key) {
+				// A concurrent update may be half-written; treat it as a miss
+				return checksumValid(i) ? new UUID(buffer.getLong(offset(i) + 8), buffer.getLong(offset(i) + 16)).toString() : null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add or replace the entry for a key. Entries are dropped once the file is three quarters full.
+	 * @param key ISBN key from {@link Book#getISBNKey(String)}
+	 * @param identifier UUID of the book node
+	 */
+	synchronized void put(long key, String identifier) {
+		UUID uuid;
+		try {
+			uuid = UUID.fromString(identifier);
+		}
+		catch (IllegalArgumentException e) {
+			return;
+		}
+		int i = slot(key);
+		while (buffer.getLong(offset(i)) != 0 && buffer.getLong(offset(i)) != key) {
+			i = (i + 1) % slots;
+		}
+		if (buffer.getLong(offset(i)) == 0) {
+			if ((size + 1) * 4L > slots * 3L) {
+				if (!fullWarned) {
+					log.warn("ISBN index is full at {} entries, increase isbnIndexSlots", size);
+					fullWarned = true;
+				}
+				return;
+			}
+			size++;
+		}
+		write(i, key, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * Remove the entry for a key, shifting later entries back so lookups need no tombstones.
+	 */
+	synchronized void remove(long key) {
+		int i = slot(key);
+		for (int probes = 0; buffer.getLong(offset(i)) != key; i = (i + 1) % slots, probes++) {
+			if (buffer.getLong(offset(i)) == 0 || probes >= slots) {
+				return;
+			}
+		}
+		size--;
+		for (int gap = i, j = (i + 1) % slots; ; j = (j + 1) % slots) {
+			long moved = buffer.getLong(offset(j));
+			if (moved == 0) {
+				buffer.putLong(offset(gap), 0);
+				return;
+			}
+			int home = slot(moved);
+			// Move the entry at j into the gap unless its home slot lies cyclically in (gap, j]
+			if (gap <= j ? (home <= gap || home > j) : (home <= gap && home > j)) {
+				write(gap, moved, buffer.getLong(offset(j) + 8), buffer.getLong(offset(j) + 16));
+				gap = j;
+			}
+		}
+	}
+
+	/**
+	 * Write a slot, key last, so that readers never match a key with a stale checksum
+	 */
+	private void write(int i, long key, long msb, long lsb) {
+		int offset = offset(i);
+		buffer.putLong(offset, 0);
+		buffer.putLong(offset + 8, msb);
+		buffer.putLong(offset + 16, lsb);
+		buffer.putInt(offset + 24, checksum(key, msb, lsb));
+		buffer.putLong(offset, key);
+	}
+
+	private boolean checksumValid(int i) {
+		int offset = offset(i);
+		return buffer.getInt(offset + 24) == checksum(buffer.getLong(offset), buffer.getLong(offset + 8),
+				buffer.getLong(offset + 16));
+	}
+
+	private static int checksum(long key, long msb, long lsb) {
+		CRC32 crc = new CRC32();
+		for (long value : new long[] { key, msb, lsb }) {
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				crc.update((int) (value >>> shift));
+			}
+		}
+		return (int) crc.getValue();
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) ((h ^ (h >>> 32)) & 0x7FFFFFFFL) % slots;
+	}
+
+	private static int offset(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	@Override
+	public void bookSaved(Book book) {
+		long key = Book.getISBNKey(book.getISBN());
+		if (key > 0 && book.getNodeIdentifier() != null) {
+			put(key, book.getNodeIdentifier());
+		}
+	}
+
+	@Override
+	public void bookRemoved(String isbn) {
+		long key = Book.getISBNKey(isbn);
+		if (key > 0) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * @return number of indexed books
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Mark the file as cleanly closed and release it.
+	 */
+	public synchronized void close() {
+		try {
+			buffer.putInt(STATE_OFFSET, STATE_CLEAN);
+			buffer.force();
+			fileLock.release();
+			file.close();
+		}
+		catch (IOException e) {
+			log.warn("Unable to close ISBN index", e);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.example.assessment;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long to long, without boxing. Key 0 is
+ * reserved to mark free slots. Not thread-safe.
+ */
+final class LongLongHashMap {
+
+	/**
+	 * Returned by {@link #get(long)} for keys that are not present
+	 */
+	static final long MISSING = -1L;
+
+	private long[] keys;
+	private long[] values;
+	private int size;
+
+	LongLongHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+		keys = new long[capacity];
+		values = new long[capacity];
+	}
+
+	/**
+	 * @param key a non-zero key
+	 * @return the value for the key, or {@link #MISSING}
+	 */
+	long get(long key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+		return MISSING;
+	}
+
+	/**
+	 * @param key a non-zero key
+	 * @param value the value; must not be {@link #MISSING}
+	 */
+	void put(long key, long value) {
+		if (key == 0) {
+			throw new IllegalArgumentException("Key 0 is reserved");
+		}
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		// Keep the load factor at or below 1/2
+		if (++size * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+	}
+
+	/**
+	 * @param key a non-zero key
+	 * @return the removed value, or {@link #MISSING}
+	 */
+	long remove(long key) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; keys[i] != key; i = (i + 1) & mask) {
+			if (keys[i] == 0) {
+				return MISSING;
+			}
+		}
+		long value = values[i];
+		size--;
+
+		// Shift later entries of the probe sequence back, so lookups need no tombstones
+		for (int gap = i, j = (i + 1) & mask; ; j = (j + 1) & mask) {
+			if (keys[j] == 0) {
+				keys[gap] = 0;
+				return value;
+			}
+			int home = slot(keys[j], mask);
+			// Move the entry at j into the gap unless its home slot lies cyclically in (gap, j]
+			if (gap <= j ? (home <= gap || home > j) : (home <= gap && home > j)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(keys, 0);
+		size = 0;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new long[capacity];
+		values = new long[capacity];
+		int mask = capacity - 1;
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldKeys[k] != 0) {
+				int i = slot(oldKeys[k], mask);
+				while (keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[k];
+				values[i] = oldValues[k];
+			}
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		// Mix the bits, as ISBNs differ mostly in their low decimal digits
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
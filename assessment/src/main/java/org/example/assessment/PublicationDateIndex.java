@@ -0,0 +1,205 @@
+package org.example.assessment;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory index of books by publication date, maintained from book change
+ * events. Entries are kept in a skip list ordered by day and ISBN, so a range
+ * scan costs time proportional to the page it returns rather than to the
+ * catalog. Pages are continued with a cursor holding the last returned entry,
+ * which stays valid while books are added or removed.
+ * <p>
+ * Like {@link AuthorIndex}, updates are serialized and lookups run concurrently
+ * with them.
+ */
+public class PublicationDateIndex implements BookChangeListener {
+
+	/**
+	 * Position of a book in the index: its publication day and ISBN.
+	 */
+	public static class Key implements Comparable<Key> {
+		private final long epochDay;
+		private final String isbn;
+
+		Key(long epochDay, String isbn) {
+			this.epochDay = epochDay;
+			this.isbn = isbn;
+		}
+
+		public long getEpochDay() {
+			return epochDay;
+		}
+
+		public String getIsbn() {
+			return isbn;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int c = Long.compare(epochDay, other.epochDay);
+			return c != 0 ? c : isbn.compareTo(other.isbn);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && compareTo((Key) o) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(epochDay) * 31 + isbn.hashCode();
+		}
+
+		/**
+		 * @return the cursor to continue a scan after (or before) this key, e.g. "2012-06-20_9780803736801"
+		 */
+		@Override
+		public String toString() {
+			return LocalDate.ofEpochDay(epochDay) + "_" + isbn;
+		}
+
+		/**
+		 * @param cursor a cursor as returned by {@link #toString()}
+		 * @return the key
+		 * @throws IllegalArgumentException if the cursor is malformed
+		 */
+		public static Key parse(String cursor) {
+			int separator = cursor.indexOf('_');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			}
+			try {
+				return new Key(LocalDate.parse(cursor.substring(0, separator)).toEpochDay(), cursor.substring(separator + 1));
+			}
+			catch (DateTimeParseException e) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+			}
+		}
+	}
+
+	/**
+	 * Indexed state of a single book.
+	 */
+	private static class Entry {
+		final long version;
+		final Key key;
+
+		Entry(long version, Key key) {
+			this.version = version;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Sorts after every ISBN, to include all books of the last day of a range
+	 */
+	private static final String LAST_ISBN = String.valueOf(Character.MAX_VALUE);
+
+	private final ConcurrentSkipListSet<Key> byDate = new ConcurrentSkipListSet<>();
+	private final Map<String, Entry> byIsbn = new ConcurrentHashMap<>();
+
+	@Override
+	public synchronized void bookSaved(Book book) {
+		String isbn = book.getISBN();
+		long version = book.getVersion() != null ? book.getVersion() : 0L;
+		Entry previous = byIsbn.get(isbn);
+		if (previous != null && previous.version > version) {
+			// A newer state has been indexed already
+			return;
+		}
+
+		Calendar date = book.getPublicationDate();
+		Key key = date != null ? new Key(toEpochDay(date), isbn) : null;
+		if (previous != null && previous.key != null && !previous.key.equals(key)) {
+			byDate.remove(previous.key);
+		}
+		if (key != null) {
+			byDate.add(key);
+		}
+		byIsbn.put(isbn, new Entry(version, key));
+	}
+
+	@Override
+	public synchronized void bookRemoved(String isbn) {
+		Entry previous = byIsbn.remove(isbn);
+		if (previous != null && previous.key != null) {
+			byDate.remove(previous.key);
+		}
+	}
+
+	/**
+	 * @param date a date
+	 * @return the day of the date in its own time zone, as days since 1970-01-01
+	 */
+	static long toEpochDay(Calendar date) {
+		return LocalDate.of(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1, date.get(Calendar.DAY_OF_MONTH))
+				.toEpochDay();
+	}
+
+	/**
+	 * Find books published within a range of days, oldest first.
+	 * @param from first day, inclusive
+	 * @param to last day, inclusive
+	 * @param after cursor of the last entry of the previous page, or null for the first page
+	 * @param limit maximum number of entries
+	 * @return entries ordered by day and ISBN
+	 */
+	public List<Key> findAscending(long from, long to, Key after, int limit) {
+		Key low = new Key(from, "");
+		boolean lowInclusive = after == null || after.compareTo(low) < 0;
+		if (!lowInclusive) {
+			low = after;
+		}
+		Key high = new Key(to, LAST_ISBN);
+		if (low.compareTo(high) > 0) {
+			return new ArrayList<>();
+		}
+		return page(byDate.subSet(low, lowInclusive, high, true), limit);
+	}
+
+	/**
+	 * Find books published within a range of days, newest first.
+	 * @param from first day, inclusive
+	 * @param to last day, inclusive
+	 * @param before cursor of the last entry of the previous page, or null for the first page
+	 * @param limit maximum number of entries
+	 * @return entries ordered by day and ISBN, descending
+	 */
+	public List<Key> findDescending(long from, long to, Key before, int limit) {
+		Key low = new Key(from, "");
+		Key high = new Key(to, LAST_ISBN);
+		boolean highInclusive = before == null || before.compareTo(high) > 0;
+		if (!highInclusive) {
+			high = before;
+		}
+		if (low.compareTo(high) > 0) {
+			return new ArrayList<>();
+		}
+		return page(byDate.subSet(low, true, high, highInclusive).descendingSet(), limit);
+	}
+
+	/**
+	 * @return number of indexed books, including those without a publication date
+	 */
+	public int size() {
+		return byIsbn.size();
+	}
+
+	private static List<Key> page(Iterable<Key> keys, int limit) {
+		List<Key> page = new ArrayList<>(Math.min(limit, 64));
+		for (Key key : keys) {
+			if (page.size() >= limit) {
+				break;
+			}
+			page.add(key);
+		}
+		return page;
+	}
+}
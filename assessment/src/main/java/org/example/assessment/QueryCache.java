@@ -0,0 +1,214 @@
+package org.example.assessment;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Bounded cache of search results, from normalized query string to the ISBNs
+ * of the matching books in result order. Entries expire after a fixed time
+ * and the least recently used entry is evicted when the cache is full.
+ * <p>
+ * Any saved book may start or stop matching any query, so a book change
+ * clears the whole cache. Publishing a book whose searchable contents did not
+ * change, as happens when a local write is followed by its observation event,
+ * does not.
+ * A removed book only invalidates the entries that contain it. Results that
+ * were computed while an invalidation happened are not cached.
+ */
+public class QueryCache implements BookChangeListener {
+
+	/**
+	 * A cached result and the time it was stored.
+	 */
+	private static class Cached {
+		final List<String> isbns;
+		final long created;
+
+		Cached(List<String> isbns, long created) {
+			this.isbns = isbns;
+			this.created = created;
+		}
+	}
+
+	private final int maxSize;
+	private final long ttl;
+
+	/**
+	 * Cached results in access order, least recently used first. Guarded by this.
+	 */
+	private final LinkedHashMap<String, Cached> entries;
+
+	/**
+	 * Incremented on every invalidation. Guarded by this.
+	 */
+	private long generation;
+
+	/**
+	 * Fingerprint of the searchable contents of every book seen so far
+	 */
+	private final Map<String, Integer> fingerprints = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * @param maxSize maximum number of cached queries, 0 to disable caching
+	 * @param ttl time in milliseconds after which a cached result expires
+	 */
+	public QueryCache(int maxSize, long ttl) {
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+				if (size() > QueryCache.this.maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Normalize a query string into a cache key. Full-text matching ignores repeated
+	 * whitespace, so queries that differ only in that share an entry. Case is kept, as
+	 * it distinguishes operators such as OR from plain terms.
+	 * @param query the query string, may be null
+	 * @return the cache key, which matches the same books as the query itself
+	 */
+	public static String normalize(String query) {
+		return StringUtils.normalizeSpace(StringUtils.defaultString(query));
+	}
+
+	/**
+	 * @param key normalized query string
+	 * @return the cached ISBNs in result order, or null if the query is not cached
+	 */
+	public synchronized List<String> get(String key) {
+		Cached entry = entries.get(key);
+		if (entry != null && System.currentTimeMillis() - entry.created > ttl) {
+			entries.remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.isbns;
+	}
+
+	/**
+	 * @return the current generation, to be passed to {@link #put(String, List, long)} along
+	 *         with the result of a query executed after this call
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Cache a query result, unless the cache was invalidated since the query started.
+	 * @param key normalized query string
+	 * @param isbns ISBNs of the matching books in result order
+	 * @param generation the generation obtained before the query was executed
+	 */
+	public synchronized void put(String key, List<String> isbns, long generation) {
+		if (maxSize > 0 && generation == this.generation) {
+			entries.put(key, new Cached(Collections.unmodifiableList(isbns), System.currentTimeMillis()));
+		}
+	}
+
+	@Override
+	public void bookSaved(Book book) {
+		int fingerprint = fingerprint(book);
+		Integer previous = fingerprints.put(book.getISBN(), fingerprint);
+		if (previous == null || previous != fingerprint) {
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * Hash the fields a full-text query can match on. The version is deliberately left out,
+	 * so saving unchanged contents keeps the cache.
+	 */
+	private static int fingerprint(Book book) {
+		return Objects.hash(book.getTitle(), book.getAuthor(), book.getShortDescription(),
+				millis(book.getPublicationDate()), millis(book.getFirstPublicationDate()));
+	}
+
+	private static Long millis(Calendar date) {
+		return date != null ? date.getTimeInMillis() : null;
+	}
+
+	@Override
+	public synchronized void bookRemoved(String isbn) {
+		if (fingerprints.remove(isbn) == null) {
+			return;
+		}
+		generation++;
+		for (Iterator<Cached> cached = entries.values().iterator(); cached.hasNext();) {
+			if (cached.next().isbns.contains(isbn)) {
+				cached.remove();
+				invalidations.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Drop all cached results.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		invalidations.addAndGet(entries.size());
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return entries evicted because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return entries dropped because of book changes
+	 */
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * @return fraction of lookups answered from the cache, 0 if there were none
+	 */
+	public double getHitRatio() {
+		long hits = getHits();
+		long lookups = hits + getMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+}
@@ -0,0 +1,122 @@
+package org.example.assessment;
+
+import java.io.IOException;
+import java.security.Principal;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Rate limits requests to /books per client and endpoint class, before they reach
+ * the resource and open a session. Clients are identified by their authenticated
+ * principal, or else their address; credentials that have not been verified yet
+ * are ignored, as they would let a client pick fresh buckets at will.
+ * <p>
+ * Every limited response carries X-RateLimit-Limit, X-RateLimit-Remaining and
+ * X-RateLimit-Reset headers; rejected requests get 429 Too Many Requests with
+ * Retry-After.
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.AUTHENTICATION - 100)
+public class RateLimitFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+	static final int TOO_MANY_REQUESTS = 429;
+	static final String LIMIT_HEADER = "X-RateLimit-Limit";
+	static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+	static final String RESET_HEADER = "X-RateLimit-Reset";
+
+	private static final String DECISION_PROPERTY = RateLimitFilter.class.getName() + ".decision";
+
+	private final RateLimiter limiter;
+
+	@Context
+	private HttpServletRequest servletRequest;
+
+	public RateLimitFilter(RateLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request) throws IOException {
+		RateLimiter.EndpointClass endpointClass = classify(request.getMethod(), request.getUriInfo().getPath());
+		if (endpointClass == null) {
+			return;
+		}
+		RateLimiter.Decision decision = limiter.acquire(getClient(request), endpointClass);
+		if (decision == null) {
+			return;
+		}
+		request.setProperty(DECISION_PROPERTY, decision);
+		if (!decision.isAllowed()) {
+			request.abortWith(Response.status(TOO_MANY_REQUESTS)
+					.type(MediaType.TEXT_PLAIN)
+					.header(HttpHeaders.RETRY_AFTER, decision.getRetryAfterSeconds())
+					.entity("Rate limit exceeded, retry in " + decision.getRetryAfterSeconds() + " s")
+					.build());
+		}
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+		Object decision = request.getProperty(DECISION_PROPERTY);
+		if (decision instanceof RateLimiter.Decision) {
+			RateLimiter.Decision limited = (RateLimiter.Decision) decision;
+			response.getHeaders().putSingle(LIMIT_HEADER, limited.getLimit());
+			response.getHeaders().putSingle(REMAINING_HEADER, limited.getRemaining());
+			response.getHeaders().putSingle(RESET_HEADER, limited.getResetSeconds());
+		}
+	}
+
+	/**
+	 * Determine the endpoint class of a request.
+	 * @param method HTTP method
+	 * @param path request path relative to the endpoint
+	 * @return the endpoint class, or null for requests that are never limited
+	 */
+	static RateLimiter.EndpointClass classify(String method, String path) {
+		String relative = path.startsWith("/") ? path.substring(1) : path;
+		if (relative.startsWith("books/") || relative.equals("books")) {
+			relative = relative.substring("books".length());
+			relative = relative.startsWith("/") ? relative.substring(1) : relative;
+		}
+		if (relative.endsWith("/")) {
+			relative = relative.substring(0, relative.length() - 1);
+		}
+		if ("ready".equals(relative) || "health".equals(relative) || "OPTIONS".equals(method)) {
+			return null;
+		}
+		if (!"GET".equals(method) && !"HEAD".equals(method) || "seed".equals(relative)) {
+			return RateLimiter.EndpointClass.WRITE;
+		}
+		if (relative.isEmpty()) {
+			return RateLimiter.EndpointClass.LIST;
+		}
+		if ("search".equals(relative) || "suggest".equals(relative)) {
+			return RateLimiter.EndpointClass.SEARCH;
+		}
+		return RateLimiter.EndpointClass.READ;
+	}
+
+	private String getClient(ContainerRequestContext request) {
+		SecurityContext security = request.getSecurityContext();
+		Principal principal = security != null ? security.getUserPrincipal() : null;
+		if (principal != null) {
+			return "user:" + principal.getName();
+		}
+		String address = servletRequest != null ? servletRequest.getRemoteAddr() : null;
+		return address != null ? "ip:" + address : "anonymous";
+	}
+}
@@ -0,0 +1,283 @@
+package org.example.assessment;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-client token buckets, one per client and endpoint class. Buckets are
+ * updated with compare-and-set, so concurrent requests never block each other.
+ * <p>
+ * The number of buckets is bounded. When a new client arrives at the limit,
+ * buckets that have refilled completely are dropped, as they are
+ * indistinguishable from new ones; this sweep runs at most once per second.
+ * Clients that still find no room share one overflow bucket per endpoint
+ * class until a later sweep frees space, so a flood of new addresses can
+ * neither grow the table nor escape the limit.
+ */
+public class RateLimiter {
+
+	/**
+	 * Endpoint classes with separate limits.
+	 */
+	public enum EndpointClass {
+		/** GET /books, a full catalog listing */
+		LIST,
+		/** GET of a single book or an index-backed page */
+		READ,
+		/** GET /books/search */
+		SEARCH,
+		/** PUT, DELETE and seeding */
+		WRITE
+	}
+
+	/**
+	 * Sustained rate and burst size for one endpoint class.
+	 */
+	public static class Limit {
+		final long perMinute;
+		final long burst;
+
+		/**
+		 * @param perMinute requests per minute refilled into the bucket
+		 * @param burst bucket capacity, i.e. requests allowed at once after a quiet period
+		 */
+		public Limit(long perMinute, long burst) {
+			this.perMinute = perMinute;
+			this.burst = burst;
+		}
+
+		public long getRatePerMinute() {
+			return perMinute;
+		}
+
+		public long getBurst() {
+			return burst;
+		}
+	}
+
+	/**
+	 * Outcome of a request for a token.
+	 */
+	public static class Decision {
+		private final boolean allowed;
+		private final long limit;
+		private final long remaining;
+		private final long retryAfterSeconds;
+		private final long resetSeconds;
+
+		Decision(boolean allowed, long limit, long remaining, long retryAfterSeconds, long resetSeconds) {
+			this.allowed = allowed;
+			this.limit = limit;
+			this.remaining = remaining;
+			this.retryAfterSeconds = retryAfterSeconds;
+			this.resetSeconds = resetSeconds;
+		}
+
+		public boolean isAllowed() {
+			return allowed;
+		}
+
+		/**
+		 * @return bucket capacity
+		 */
+		public long getLimit() {
+			return limit;
+		}
+
+		/**
+		 * @return whole tokens left after this request
+		 */
+		public long getRemaining() {
+			return remaining;
+		}
+
+		/**
+		 * @return seconds until a token is available again, 0 if one is available now
+		 */
+		public long getRetryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+
+		/**
+		 * @return seconds until the bucket is full again
+		 */
+		public long getResetSeconds() {
+			return resetSeconds;
+		}
+	}
+
+	/**
+	 * Immutable bucket state, replaced atomically on every update.
+	 */
+	private static class State {
+		final double tokens;
+		final long updated;
+
+		State(double tokens, long updated) {
+			this.tokens = tokens;
+			this.updated = updated;
+		}
+	}
+
+	/**
+	 * Bucket key of one client and endpoint class.
+	 */
+	private static final class Key {
+		final String client;
+		final EndpointClass endpointClass;
+
+		Key(String client, EndpointClass endpointClass) {
+			this.client = client;
+			this.endpointClass = endpointClass;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return endpointClass == other.endpointClass && client.equals(other.client);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(client, endpointClass);
+		}
+	}
+
+	private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	private final Map<EndpointClass, Limit> limits;
+	private final int maxBuckets;
+	private final Map<Key, AtomicReference<State>> buckets = new ConcurrentHashMap<>();
+	private final AtomicInteger bucketCount = new AtomicInteger();
+	private final Map<EndpointClass, AtomicReference<State>> overflow = new EnumMap<>(EndpointClass.class);
+	private final AtomicLong lastSweep = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL);
+
+	/**
+	 * @param limits limit per endpoint class; classes without a limit are not limited
+	 * @param maxBuckets maximum number of per-client buckets
+	 */
+	public RateLimiter(Map<EndpointClass, Limit> limits, int maxBuckets) {
+		this.limits = new EnumMap<>(limits);
+		this.maxBuckets = maxBuckets;
+		long now = System.nanoTime();
+		for (Map.Entry<EndpointClass, Limit> entry : this.limits.entrySet()) {
+			overflow.put(entry.getKey(), new AtomicReference<>(new State(entry.getValue().burst, now)));
+		}
+	}
+
+	/**
+	 * Take a token for a request.
+	 * @param client principal name or address of the client
+	 * @param endpointClass class of the requested endpoint
+	 * @return the decision, or null if the endpoint class is not limited
+	 */
+	public Decision acquire(String client, EndpointClass endpointClass) {
+		Limit limit = limits.get(endpointClass);
+		if (limit == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		Key key = new Key(client, endpointClass);
+		AtomicReference<State> bucket = buckets.get(key);
+		if (bucket == null) {
+			if (bucketCount.get() >= maxBuckets) {
+				sweep(now);
+			}
+			if (reserve()) {
+				AtomicReference<State> created = new AtomicReference<>(new State(limit.burst, now));
+				bucket = buckets.putIfAbsent(key, created);
+				if (bucket == null) {
+					bucket = created;
+				} else {
+					bucketCount.decrementAndGet();
+				}
+			} else {
+				bucket = overflow.get(endpointClass);
+			}
+		}
+
+		double perNano = limit.perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+		while (true) {
+			State current = bucket.get();
+			double tokens = refill(current, limit, perNano, now);
+			boolean allowed = tokens >= 1;
+			State next = new State(allowed ? tokens - 1 : tokens, Math.max(now, current.updated));
+			if (bucket.compareAndSet(current, next)) {
+				long retryAfter = allowed ? 0 : Math.max(1, secondsFor(1 - tokens, perNano));
+				return new Decision(allowed, limit.burst, (long) next.tokens, retryAfter,
+						secondsFor(limit.burst - next.tokens, perNano));
+			}
+		}
+	}
+
+	/**
+	 * @return whole seconds needed to refill the given number of tokens
+	 */
+	private static long secondsFor(double tokens, double perNano) {
+		if (tokens <= 0) {
+			return 0;
+		}
+		if (perNano <= 0) {
+			return TimeUnit.MINUTES.toSeconds(1);
+		}
+		return (long) Math.ceil(tokens / perNano / TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private static double refill(State state, Limit limit, double perNano, long now) {
+		long elapsed = Math.max(0, now - state.updated);
+		return Math.min(limit.burst, state.tokens + elapsed * perNano);
+	}
+
+	/**
+	 * Claim room for one more bucket.
+	 * @return false if the table is full
+	 */
+	private boolean reserve() {
+		while (true) {
+			int count = bucketCount.get();
+			if (count >= maxBuckets) {
+				return false;
+			}
+			if (bucketCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Drop buckets that are full again, i.e. of clients that have been quiet for a while.
+	 * Only one caller per {@link #SWEEP_INTERVAL} walks the table; the others return at once.
+	 */
+	private void sweep(long now) {
+		long last = lastSweep.get();
+		if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now)) {
+			return;
+		}
+		for (Iterator<Map.Entry<Key, AtomicReference<State>>> entries = buckets.entrySet().iterator(); entries.hasNext();) {
+			Map.Entry<Key, AtomicReference<State>> entry = entries.next();
+			Limit limit = limits.get(entry.getKey().endpointClass);
+			double perNano = limit.perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+			if (refill(entry.getValue().get(), limit, perNano, now) >= limit.burst) {
+				entries.remove();
+				bucketCount.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return number of per-client buckets, excluding the shared overflow buckets
+	 */
+	public int size() {
+		return buckets.size();
+	}
+}
@@ -0,0 +1,160 @@
+package org.example.assessment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing breakdown of a single request, collected on the request thread. Code
+ * along the request path reports the phases it spends time in through
+ * {@link #span(String)} and the work it does through {@link #count(String, long)};
+ * both are no-ops on threads without a trace, i.e. outside sampled requests.
+ * <p>
+ * Phases may nest, e.g. a property read during serialization, so phase times
+ * need not add up to the total.
+ */
+public class RequestTrace {
+
+	/**
+	 * Phase names
+	 */
+	public static final String LOGIN = "login";
+	public static final String BOOKS_NODE = "booksNode";
+	public static final String LOOKUP = "lookup";
+	public static final String LOAD = "load";
+	public static final String QUERY = "query";
+	public static final String TRAVERSE = "traverse";
+	public static final String SAVE = "save";
+	public static final String SERIALIZE = "serialize";
+
+	/**
+	 * Counter names
+	 */
+	public static final String NODES = "nodes";
+	public static final String RESULTS = "results";
+
+	/**
+	 * A running phase, ended by {@link #close()}.
+	 */
+	public static final class Span implements AutoCloseable {
+		private final RequestTrace trace;
+		private final String phase;
+		private final long start;
+
+		private Span(RequestTrace trace, String phase) {
+			this.trace = trace;
+			this.phase = phase;
+			this.start = trace != null ? System.nanoTime() : 0;
+		}
+
+		@Override
+		public void close() {
+			if (trace != null) {
+				trace.add(phase, System.nanoTime() - start);
+			}
+		}
+	}
+
+	private static final Span NO_SPAN = new Span(null, null);
+	private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+	private final String method;
+	private final String path;
+	private final long start = System.nanoTime();
+
+	/**
+	 * Nanoseconds and call counts per phase, and counter values, in order of first use
+	 */
+	private final Map<String, long[]> phases = new LinkedHashMap<>();
+	private final Map<String, long[]> counters = new LinkedHashMap<>();
+
+	private RequestTrace(String method, String path) {
+		this.method = method;
+		this.path = path;
+	}
+
+	/**
+	 * Start tracing a request on the current thread, replacing any previous trace.
+	 * @param method HTTP method
+	 * @param path request path
+	 * @return the new trace
+	 */
+	public static RequestTrace start(String method, String path) {
+		RequestTrace trace = new RequestTrace(method, path);
+		CURRENT.set(trace);
+		return trace;
+	}
+
+	/**
+	 * @return the trace of the current thread, or null
+	 */
+	public static RequestTrace current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Stop tracing on the current thread.
+	 * @return the trace that was stopped, or null
+	 */
+	public static RequestTrace stop() {
+		RequestTrace trace = CURRENT.get();
+		CURRENT.remove();
+		return trace;
+	}
+
+	/**
+	 * Start a phase of the current request, for use in try-with-resources.
+	 * @param phase phase name
+	 * @return the running phase
+	 */
+	public static Span span(String phase) {
+		RequestTrace trace = CURRENT.get();
+		return trace != null ? new Span(trace, phase) : NO_SPAN;
+	}
+
+	/**
+	 * Add to a counter of the current request.
+	 * @param counter counter name
+	 * @param amount amount to add
+	 */
+	public static void count(String counter, long amount) {
+		RequestTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.counters.computeIfAbsent(counter, k -> new long[1])[0] += amount;
+		}
+	}
+
+	private void add(String phase, long nanos) {
+		long[] totals = phases.computeIfAbsent(phase, k -> new long[2]);
+		totals[0] += nanos;
+		totals[1]++;
+	}
+
+	/**
+	 * @return milliseconds since the trace was started
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * Format the trace as a single line of key=value pairs, phases as milliseconds with the
+	 * number of calls, e.g. "method=GET path=books/search status=200 total=1250ms query=980ms/1
+	 * load=210ms/500 nodes=500 results=500".
+	 * @param status HTTP status of the response
+	 * @return the formatted trace
+	 */
+	public String format(int status) {
+		StringBuilder line = new StringBuilder();
+		line.append("method=").append(method).append(" path=").append(path).append(" status=").append(status)
+				.append(" total=").append(getElapsedMillis()).append("ms");
+		for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+			line.append(' ').append(phase.getKey()).append('=')
+					.append(TimeUnit.NANOSECONDS.toMillis(phase.getValue()[0])).append("ms/").append(phase.getValue()[1]);
+		}
+		for (Map.Entry<String, long[]> counter : counters.entrySet()) {
+			line.append(' ').append(counter.getKey()).append('=').append(counter.getValue()[0]);
+		}
+		return line.toString();
+	}
+}
@@ -0,0 +1,113 @@
+package org.example.assessment;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Slow-request log: traces a sample of the requests to /books with a
+ * {@link RequestTrace} and logs those that take longer than the threshold,
+ * serialization included, as a single line with their phase timings and
+ * counts to the {@value #LOG_NAME} logger, e.g.
+ * <pre>slow request method=GET path=search status=200 total=1250ms login=15ms/1 query=980ms/1 load=210ms/500 serialize=40ms/1 nodes=500 results=500</pre>
+ * It runs before the {@link RateLimitFilter}, so rejected requests are traced too.
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.AUTHENTICATION - 200)
+public class RequestTraceFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	static final String LOG_NAME = "org.example.assessment.SlowRequests";
+
+	private static final Logger log = LoggerFactory.getLogger(LOG_NAME);
+
+	private final long thresholdMillis;
+	private final int samplePercent;
+
+	/**
+	 * @param thresholdMillis duration in milliseconds above which a traced request is logged
+	 * @param samplePercent percentage of requests that are traced
+	 */
+	public RequestTraceFilter(long thresholdMillis, int samplePercent) {
+		this.thresholdMillis = thresholdMillis;
+		this.samplePercent = samplePercent;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request) throws IOException {
+		if (samplePercent >= 100 || ThreadLocalRandom.current().nextInt(100) < samplePercent) {
+			RequestTrace.start(request.getMethod(), request.getUriInfo().getPath());
+		}
+		else {
+			// Don't let a trace leak from an earlier request on this thread
+			RequestTrace.stop();
+		}
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+		RequestTrace trace = RequestTrace.current();
+		if (trace == null) {
+			return;
+		}
+		RequestTrace.count(RequestTrace.RESULTS, countResults(response.getEntity()));
+		if (!response.hasEntity()) {
+			finish(response.getStatus());
+		}
+		else {
+			// Finished after serialization
+			request.setProperty(LOG_NAME, response.getStatus());
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+		if (RequestTrace.current() == null) {
+			context.proceed();
+			return;
+		}
+		try (RequestTrace.Span span = RequestTrace.span(RequestTrace.SERIALIZE)) {
+			context.proceed();
+		}
+		finally {
+			Object status = context.getProperty(LOG_NAME);
+			finish(status instanceof Integer ? (Integer) status : 0);
+		}
+	}
+
+	private void finish(int status) {
+		RequestTrace trace = RequestTrace.stop();
+		if (trace != null && trace.getElapsedMillis() >= thresholdMillis) {
+			log.warn("slow request {}", trace.format(status));
+		}
+	}
+
+	/**
+	 * @return number of books or other results in a response entity
+	 */
+	private static long countResults(Object entity) {
+		if (entity instanceof Collection) {
+			return ((Collection<?>) entity).size();
+		}
+		if (entity instanceof Map && ((Map<?, ?>) entity).get("books") instanceof Collection) {
+			return ((Collection<?>) ((Map<?, ?>) entity).get("books")).size();
+		}
+		return entity != null ? 1 : 0;
+	}
+}
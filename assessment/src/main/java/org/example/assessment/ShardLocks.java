@@ -0,0 +1,126 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks that serialize writes within this JVM per shard folder, so that
+ * concurrent writers don't run into save conflicts when they add, update or
+ * remove books in the same folder, or create or remove the folder itself.
+ * Writers to different shards only contend when their folders share a stripe.
+ * <p>
+ * Stripes are always acquired in ascending order, so writers holding several
+ * cannot deadlock. Other cluster nodes are not covered; writers still need to
+ * handle the occasional save conflict.
+ */
+public class ShardLocks {
+
+	/**
+	 * Held stripes, released by {@link #close()}.
+	 */
+	public static class Held implements AutoCloseable {
+		/**
+		 * Nothing held, for writers outside a running module
+		 */
+		static final Held NONE = new Held(new ReentrantLock[0]);
+
+		private final ReentrantLock[] locks;
+
+		Held(ReentrantLock[] locks) {
+			this.locks = locks;
+		}
+
+		@Override
+		public void close() {
+			for (int i = locks.length - 1; i >= 0; i--) {
+				locks[i].unlock();
+			}
+		}
+	}
+
+	private final ReentrantLock[] stripes;
+
+	/**
+	 * @param stripes number of locks the shards are spread over
+	 */
+	public ShardLocks(int stripes) {
+		this.stripes = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Lock the shard of a single book.
+	 * @param isbn sanitized ISBN of the book
+	 * @return the held lock, to be closed when the write is saved or discarded
+	 */
+	public Held lock(String isbn) {
+		ReentrantLock lock = stripes[stripe(folderKey(isbn))];
+		lock.lock();
+		return new Held(new ReentrantLock[] { lock });
+	}
+
+	/**
+	 * Lock the shards of several books.
+	 * @param isbns sanitized ISBNs of the books
+	 * @return the held locks, to be closed when the write is saved or discarded
+	 */
+	public Held lock(Collection<String> isbns) {
+		List<String> folderKeys = new ArrayList<>(isbns.size());
+		for (String isbn : isbns) {
+			folderKeys.add(folderKey(isbn));
+		}
+		return lockFolders(folderKeys);
+	}
+
+	/**
+	 * Lock shard folders by name, e.g. for maintenance of folders whatever books they hold.
+	 * @param folderKeys names of the shard folders
+	 * @return the held locks, to be closed when the write is saved or discarded
+	 */
+	public Held lockFolders(Collection<String> folderKeys) {
+		boolean[] needed = new boolean[stripes.length];
+		for (String folderKey : folderKeys) {
+			needed[stripe(folderKey)] = true;
+		}
+		ReentrantLock[] locks = new ReentrantLock[stripes.length];
+		int count = 0;
+		for (int i = 0; i < needed.length; i++) {
+			if (needed[i]) {
+				locks[count++] = stripes[i];
+			}
+		}
+		return acquire(Arrays.copyOf(locks, count));
+	}
+
+	/**
+	 * Lock all shards, for writes whose books are not known up front.
+	 * @return the held locks
+	 */
+	public Held lockAll() {
+		return acquire(stripes.clone());
+	}
+
+	private static Held acquire(ReentrantLock[] locks) {
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		return new Held(locks);
+	}
+
+	private static String folderKey(String isbn) {
+		return isbn != null ? Book.getFolderKey(isbn) : null;
+	}
+
+	/**
+	 * @return the stripe of a shard folder; a missing key, i.e. an invalid ISBN that is rejected
+	 *         later, gets stripe 0
+	 */
+	private int stripe(String folderKey) {
+		return folderKey != null ? (folderKey.hashCode() & 0x7FFFFFFF) % stripes.length : 0;
+	}
+}
@@ -0,0 +1,154 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Full-catalog traversal that fans out over the shard folders below the books
+ * root. Shard folders are independent subtrees, so they are handed out to the
+ * workers of a bounded fork-join pool, and every worker reads its shards
+ * through its own session (JCR sessions must not be shared between threads).
+ * Workers never modify content, so their sessions are never saved.
+ */
+public class ShardTraversal {
+
+	/**
+	 * Callback for a single shard folder. Invoked concurrently from several
+	 * worker threads, so implementations must be thread-safe.
+	 */
+	public interface ShardVisitor {
+		void visit(Node folder) throws RepositoryException;
+	}
+
+	/**
+	 * Source of worker sessions. Each session is logged out by the worker
+	 * that requested it.
+	 */
+	public interface SessionFactory {
+		Session login() throws RepositoryException;
+	}
+
+	private final ForkJoinPool pool;
+	private final SessionFactory sessionFactory;
+
+	/**
+	 * @param pool the pool whose parallelism bounds the number of concurrent workers
+	 * @param sessionFactory source of one read session per worker
+	 */
+	public ShardTraversal(ForkJoinPool pool, SessionFactory sessionFactory) {
+		this.pool = pool;
+		this.sessionFactory = sessionFactory;
+	}
+
+	/**
+	 * Parallel equivalent of {@link Book#loadAll(Node, Collection)}. The books
+	 * are detached, so properties that are not read here stay empty: the
+	 * worker sessions are closed by the time this method returns.
+	 * @param booksRoot JCR node representing the root of the books content
+	 * @param properties JCR properties to read
+	 * @return all stored books, grouped by shard folder in folder name order
+	 * @throws RepositoryException
+	 */
+	public List<Book> loadAll(Node booksRoot, final Collection<String> properties) throws RepositoryException {
+		final Map<String, List<Book>> shards = new ConcurrentSkipListMap<>();
+		visitAll(booksRoot, folder -> {
+			List<Book> books = new ArrayList<>();
+			Book.loadShard(folder, books, properties);
+			for (Book book : books) {
+				book.detach();
+			}
+			shards.put(folder.getName(), books);
+		});
+
+		// Merge in shard order
+		List<Book> books = new ArrayList<>();
+		for (List<Book> shard : shards.values()) {
+			books.addAll(shard);
+		}
+		return books;
+	}
+
+	/**
+	 * Visit every shard folder below the books root exactly once. Folders
+	 * removed while the traversal runs are skipped.
+	 * @param booksRoot JCR node representing the root of the books content
+	 * @param visitor thread-safe callback invoked once per shard folder
+	 * @throws RepositoryException if listing the shards or any visit fails
+	 */
+	public void visitAll(Node booksRoot, final ShardVisitor visitor) throws RepositoryException {
+		final List<String> folderPaths = new ArrayList<>();
+		for (NodeIterator folders = booksRoot.getNodes(); folders.hasNext();) {
+			folderPaths.add(folders.nextNode().getPath());
+		}
+
+		int workers = Math.min(pool.getParallelism(), folderPaths.size());
+		if (workers <= 1) {
+			// Not worth an extra session -- use the caller's
+			for (NodeIterator folders = booksRoot.getNodes(); folders.hasNext();) {
+				visitor.visit(folders.nextNode());
+			}
+			return;
+		}
+
+		// Workers pull the next unvisited shard, so one large shard does not hold up the others
+		final AtomicInteger next = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			tasks.add(() -> {
+				Session session = sessionFactory.login();
+				try {
+					for (int j = next.getAndIncrement(); j < folderPaths.size(); j = next.getAndIncrement()) {
+						String path = folderPaths.get(j);
+						if (session.nodeExists(path)) {
+							visitor.visit(session.getNode(path));
+						}
+					}
+				}
+				finally {
+					session.logout();
+				}
+				return null;
+			});
+		}
+
+		for (Future<Void> result : pool.invokeAll(tasks)) {
+			await(result);
+		}
+	}
+
+	/**
+	 * Wait for a worker and rethrow its failure, if any.
+	 */
+	private static void await(Future<Void> result) throws RepositoryException {
+		try {
+			result.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RepositoryException("Interrupted during shard traversal", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RepositoryException) {
+				throw (RepositoryException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RepositoryException("Shard traversal failed", cause);
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package org.example.assessment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.nodetype.NodeType;
+
+/**
+ * Streaming dump of a repository subtree, e.g. to verify a migration or
+ * compare environments. Nodes are written depth-first with their children
+ * and properties in name order, so dumps of equal content are equal, one
+ * line per record:
+ * <pre>
+ * +	/books/801	nt:unstructured
+ * +	/books/801/9780803736801	book:Book
+ * =	book:isbn	String	9780803736801
+ * *	book:authors	String	Eric Carle	Bill Martin
+ * =	book:cover	Binary	sha256:9f86d0...:48213
+ * -	/books/801/9780803736801	5c1d3b...
+ * -	/books/801	e0a7f2...
+ * </pre>
+ * Start lines hold the primary type and sorted mixins, property lines the
+ * escaped values and end lines the SHA-256 hash of the subtree: its names,
+ * types and properties and the hashes of its children, but not its location,
+ * so equal hashes mean equal subtrees. Binaries are hashed while streaming
+ * them, and identifiers and other properties that differ between
+ * environments are left out by default.
+ * <p>
+ * Only the path to the current node is held in memory, so the size of the
+ * subtree doesn't matter. {@link #diff(Reader, Reader, Writer)} compares two
+ * dumps in a single pass with the same memory bound. As a subtree's hash is
+ * only known at its end, that pass can't skip equal subtrees and always reads
+ * both dumps fully; to find out whether two subtrees differ at all, compare
+ * the hashes returned by {@link #dump(Node, Writer)} instead.
+ */
+public class SubtreeDumper {
+
+	static final char START = '+';
+	static final char PROPERTY = '=';
+	static final char MULTI_PROPERTY = '*';
+	static final char END = '-';
+	static final char CHANGED = '~';
+
+	/**
+	 * Properties left out by default: identifiers, which differ between environments, and
+	 * bookkeeping maintained by the repository
+	 */
+	public static final Set<String> DEFAULT_IGNORED_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"jcr:primaryType", "jcr:mixinTypes", "jcr:uuid", "jcr:created", "jcr:createdBy", "jcr:lastModified",
+			"jcr:lastModifiedBy", "jcr:baseVersion", "jcr:versionHistory", "jcr:predecessors", "jcr:isCheckedOut")));
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Set<String> ignoredProperties;
+
+	public SubtreeDumper() {
+		this(DEFAULT_IGNORED_PROPERTIES);
+	}
+
+	/**
+	 * @param ignoredProperties names of properties to leave out; jcr:primaryType and
+	 *            jcr:mixinTypes are always on the start line instead
+	 */
+	public SubtreeDumper(Set<String> ignoredProperties) {
+		Set<String> ignored = new HashSet<>(ignoredProperties);
+		ignored.add("jcr:primaryType");
+		ignored.add("jcr:mixinTypes");
+		this.ignoredProperties = ignored;
+	}
+
+	/**
+	 * Dump a subtree.
+	 * @param root root node of the subtree
+	 * @param out destination of the dump
+	 * @return hash of the subtree, as on its end line
+	 * @throws RepositoryException
+	 * @throws IOException if writing fails
+	 */
+	public String dump(Node root, Writer out) throws RepositoryException, IOException {
+		MessageDigest digest = sha256();
+		writeStart(root, out, digest);
+		for (String name : childNames(root)) {
+			update(digest, dump(root.getNode(name), out));
+		}
+		return writeEnd(root, out, digest);
+	}
+
+	/**
+	 * Dump a subtree, descending into the children of the root in parallel, each through a
+	 * session of its own. Their dumps are spooled to temporary files, which are appended to the
+	 * output in name order, so the result equals that of {@link #dump(Node, Writer)}.
+	 * @param root root node of the subtree, e.g. the books root
+	 * @param out destination of the dump
+	 * @param traversal traversal providing the worker threads and sessions
+	 * @return hash of the subtree, as on its end line
+	 * @throws RepositoryException
+	 * @throws IOException if writing fails
+	 */
+	public String dump(Node root, Writer out, ShardTraversal traversal) throws RepositoryException, IOException {
+		final File directory = Files.createTempDirectory("subtree-dump").toFile();
+		// Spool file and hash per child
+		final Map<String, String[]> children = new ConcurrentSkipListMap<>();
+		try {
+			traversal.visitAll(root, child -> {
+				String name = getName(child);
+				try {
+					File file = File.createTempFile("child", ".dump", directory);
+					String[] spooled = { file.getPath(), null };
+					children.put(name, spooled);
+					try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+						spooled[1] = dump(child, writer);
+					}
+				}
+				catch (IOException e) {
+					throw new RepositoryException("Failed to spool the dump of " + child.getPath(), e);
+				}
+			});
+
+			MessageDigest digest = sha256();
+			writeStart(root, out, digest);
+			for (String[] child : children.values()) {
+				try (BufferedReader reader = Files.newBufferedReader(new File(child[0]).toPath(), StandardCharsets.UTF_8)) {
+					char[] buffer = new char[8192];
+					for (int n = reader.read(buffer); n >= 0; n = reader.read(buffer)) {
+						out.write(buffer, 0, n);
+					}
+				}
+				update(digest, child[1]);
+			}
+			return writeEnd(root, out, digest);
+		}
+		finally {
+			for (String[] child : children.values()) {
+				new File(child[0]).delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private void writeStart(Node node, Writer out, MessageDigest digest) throws RepositoryException, IOException {
+		StringBuilder types = new StringBuilder(node.getPrimaryNodeType().getName());
+		List<String> mixins = new ArrayList<>();
+		for (NodeType mixin : node.getMixinNodeTypes()) {
+			mixins.add(mixin.getName());
+		}
+		Collections.sort(mixins);
+		for (String mixin : mixins) {
+			types.append('\t').append(mixin);
+		}
+		out.write(START + "\t" + escape(node.getPath()) + "\t" + types + "\n");
+		update(digest, START + "\t" + escape(getName(node)) + "\t" + types);
+
+		TreeMap<String, Property> properties = new TreeMap<>();
+		for (PropertyIterator iterator = node.getProperties(); iterator.hasNext();) {
+			Property property = iterator.nextProperty();
+			if (!ignoredProperties.contains(property.getName())) {
+				properties.put(property.getName(), property);
+			}
+		}
+		for (Property property : properties.values()) {
+			StringBuilder line = new StringBuilder();
+			line.append(property.isMultiple() ? MULTI_PROPERTY : PROPERTY).append('\t').append(property.getName())
+					.append('\t').append(PropertyType.nameFromValue(property.getType()));
+			if (property.isMultiple()) {
+				for (Value value : property.getValues()) {
+					line.append('\t').append(format(value));
+				}
+			}
+			else {
+				line.append('\t').append(format(property.getValue()));
+			}
+			out.write(line.toString());
+			out.write('\n');
+			update(digest, line.toString());
+		}
+	}
+
+	private static String writeEnd(Node node, Writer out, MessageDigest digest) throws RepositoryException, IOException {
+		String hash = hex(digest.digest());
+		out.write(END + "\t" + escape(node.getPath()) + "\t" + hash + "\n");
+		return hash;
+	}
+
+	/**
+	 * @return names of the children of a node, with the index of same-name siblings, in name order
+	 */
+	private static List<String> childNames(Node node) throws RepositoryException {
+		List<String> names = new ArrayList<>();
+		for (NodeIterator children = node.getNodes(); children.hasNext();) {
+			names.add(getName(children.nextNode()));
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private static String getName(Node node) throws RepositoryException {
+		return node.getIndex() > 1 ? node.getName() + "[" + node.getIndex() + "]" : node.getName();
+	}
+
+	/**
+	 * @return the escaped value, or the hash and length of a binary
+	 */
+	private static String format(Value value) throws RepositoryException, IOException {
+		if (value.getType() != PropertyType.BINARY) {
+			return escape(value.getString());
+		}
+		Binary binary = value.getBinary();
+		try (InputStream in = binary.getStream()) {
+			MessageDigest digest = sha256();
+			byte[] buffer = new byte[8192];
+			long length = 0;
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+				digest.update(buffer, 0, n);
+				length += n;
+			}
+			return "sha256:" + hex(digest.digest()) + ":" + length;
+		}
+		finally {
+			binary.dispose();
+		}
+	}
+
+	/**
+	 * Compare two dumps, writing a line per difference: "-" or "+" and the path of a node only
+	 * in the left or right dump (its descendants are not listed), "~" and the path of a node
+	 * whose types differ, or any of these and the path of a property, e.g. "~ /books/801/@book:price".
+	 * Both dumps must have been written with the same ignored properties. End lines are not
+	 * used, so both dumps are read and compared node by node to the end.
+	 * @param left the original dump
+	 * @param right the dump to compare with it
+	 * @param out destination of the differences
+	 * @return number of differences
+	 * @throws IOException if reading or writing fails
+	 */
+	public static long diff(Reader left, Reader right, Writer out) throws IOException {
+		DumpReader lefts = new DumpReader(left);
+		DumpReader rights = new DumpReader(right);
+		long differences = 0;
+		NodeRecord l = lefts.next();
+		NodeRecord r = rights.next();
+		while (l != null || r != null) {
+			int order = l == null ? 1 : r == null ? -1 : comparePaths(l.path, r.path);
+			if (order < 0) {
+				writeDifference(out, END, l.path);
+				differences++;
+				l = lefts.skipDescendants(l.path);
+			}
+			else if (order > 0) {
+				writeDifference(out, START, r.path);
+				differences++;
+				r = rights.skipDescendants(r.path);
+			}
+			else {
+				differences += diffNode(l, r, out);
+				l = lefts.next();
+				r = rights.next();
+			}
+		}
+		return differences;
+	}
+
+	/**
+	 * @return number of differences between the types and properties of a node in two dumps
+	 */
+	private static long diffNode(NodeRecord left, NodeRecord right, Writer out) throws IOException {
+		long differences = 0;
+		if (!left.types.equals(right.types)) {
+			writeDifference(out, CHANGED, left.path);
+			differences++;
+		}
+		Set<String> names = new TreeSet<>(left.properties.keySet());
+		names.addAll(right.properties.keySet());
+		for (String name : names) {
+			String l = left.properties.get(name);
+			String r = right.properties.get(name);
+			if (l == null || r == null || !l.equals(r)) {
+				writeDifference(out, l == null ? START : r == null ? END : CHANGED, left.path + "/@" + name);
+				differences++;
+			}
+		}
+		return differences;
+	}
+
+	private static void writeDifference(Writer out, char kind, String path) throws IOException {
+		out.write(kind + "\t" + path + "\n");
+	}
+
+	/**
+	 * Order of paths in a dump: ancestors first, siblings by name.
+	 */
+	static int comparePaths(String a, String b) {
+		if (a.length() == 1 || b.length() == 1) {
+			// The root path "/"
+			return Integer.compare(a.length() == 1 ? 0 : 1, b.length() == 1 ? 0 : 1);
+		}
+		String[] as = a.substring(1).split("/", -1);
+		String[] bs = b.substring(1).split("/", -1);
+		for (int i = 0; i < Math.min(as.length, bs.length); i++) {
+			int order = as[i].compareTo(bs[i]);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return Integer.compare(as.length, bs.length);
+	}
+
+	/**
+	 * A node's start line and properties, read from a dump
+	 */
+	private static final class NodeRecord {
+		final String path;
+		final String types;
+		final Map<String, String> properties = new TreeMap<>();
+
+		NodeRecord(String startLine) {
+			int tab = startLine.indexOf('\t', 2);
+			this.path = tab < 0 ? startLine.substring(2) : startLine.substring(2, tab);
+			this.types = tab < 0 ? "" : startLine.substring(tab + 1);
+		}
+	}
+
+	/**
+	 * Reads the node records of a dump in order, skipping end lines.
+	 */
+	private static final class DumpReader {
+		private final BufferedReader in;
+		private String line;
+
+		DumpReader(Reader in) throws IOException {
+			this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+			this.line = this.in.readLine();
+		}
+
+		NodeRecord next() throws IOException {
+			while (line != null && (line.isEmpty() || line.charAt(0) != START)) {
+				line = in.readLine();
+			}
+			if (line == null) {
+				return null;
+			}
+			NodeRecord record = new NodeRecord(line);
+			for (line = in.readLine(); line != null && !line.isEmpty()
+					&& (line.charAt(0) == PROPERTY || line.charAt(0) == MULTI_PROPERTY); line = in.readLine()) {
+				int tab = line.indexOf('\t', 2);
+				record.properties.put(line.substring(2, tab), line.charAt(0) + line.substring(tab));
+			}
+			return record;
+		}
+
+		/**
+		 * @return the first record after the descendants of a path, or null
+		 */
+		NodeRecord skipDescendants(String path) throws IOException {
+			String prefix = path.endsWith("/") ? path : path + "/";
+			NodeRecord record = next();
+			while (record != null && record.path.startsWith(prefix)) {
+				record = next();
+			}
+			return record;
+		}
+	}
+
+	/**
+	 * Escape backslashes, tabs and line breaks, so every record is a single line of tab-separated fields.
+	 */
+	static String escape(String value) {
+		StringBuilder escaped = null;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			String replacement = c == '\\' ? "\\\\" : c == '\t' ? "\\t" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+			if (replacement != null && escaped == null) {
+				escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+			}
+			if (escaped != null) {
+				if (replacement != null) {
+					escaped.append(replacement);
+				}
+				else {
+					escaped.append(c);
+				}
+			}
+		}
+		return escaped != null ? escaped.toString() : value;
+	}
+
+	private static void update(MessageDigest digest, String line) {
+		digest.update(line.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) '\n');
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,176 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory prefix index over normalized titles and author names for
+ * typeahead suggestions, maintained from book change events.
+ * <p>
+ * Keys are sorted, so all keys starting with a prefix form one contiguous
+ * range. Matches at the start of a title or author name rank before matches
+ * at the start of a later word ("cat" finds "Cat in the Hat" before "The
+ * Very Hungry Caterpillar").
+ */
+public class SuggestIndex implements BookChangeListener {
+
+	/**
+	 * Separates the indexed text from the ISBN in a key, and sorts before any text character
+	 */
+	private static final char SEPARATOR = '\u0000';
+
+	/**
+	 * Maximum number of inner words of a title or name that are indexed
+	 */
+	private static final int MAX_WORDS = 8;
+
+	/**
+	 * A single suggestion, serialized as JSON.
+	 */
+	public static class Suggestion {
+		private final String isbn;
+		private final String title;
+
+		Suggestion(String isbn, String title) {
+			this.isbn = isbn;
+			this.title = title;
+		}
+
+		public String getIsbn() {
+			return isbn;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+	}
+
+	/**
+	 * Indexed state of a single book.
+	 */
+	private static class Entry {
+		final long version;
+		final Suggestion suggestion;
+		final Set<String> leadingKeys;
+		final Set<String> innerKeys;
+
+		Entry(long version, Suggestion suggestion, Set<String> leadingKeys, Set<String> innerKeys) {
+			this.version = version;
+			this.suggestion = suggestion;
+			this.leadingKeys = leadingKeys;
+			this.innerKeys = innerKeys;
+		}
+	}
+
+	/**
+	 * Keys for the start of full titles and author names
+	 */
+	private final ConcurrentSkipListMap<String, String> leading = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Keys for the start of every later word in titles and author names
+	 */
+	private final ConcurrentSkipListMap<String, String> inner = new ConcurrentSkipListMap<>();
+
+	private final Map<String, Entry> byIsbn = new ConcurrentHashMap<>();
+
+	@Override
+	public synchronized void bookSaved(Book book) {
+		String isbn = book.getISBN();
+		long version = book.getVersion() != null ? book.getVersion() : 0L;
+		Entry previous = byIsbn.get(isbn);
+		if (previous != null && previous.version > version) {
+			// A newer state has been indexed already
+			return;
+		}
+
+		Set<String> leadingKeys = new LinkedHashSet<>();
+		Set<String> innerKeys = new LinkedHashSet<>();
+		addKeys(book.getTitle(), isbn, leadingKeys, innerKeys);
+		for (String author : book.getAuthor()) {
+			addKeys(author, isbn, leadingKeys, innerKeys);
+		}
+
+		if (previous != null) {
+			leading.keySet().removeAll(previous.leadingKeys);
+			inner.keySet().removeAll(previous.innerKeys);
+		}
+		for (String key : leadingKeys) {
+			leading.put(key, isbn);
+		}
+		for (String key : innerKeys) {
+			inner.put(key, isbn);
+		}
+		byIsbn.put(isbn, new Entry(version, new Suggestion(isbn, book.getTitle()), leadingKeys, innerKeys));
+	}
+
+	@Override
+	public synchronized void bookRemoved(String isbn) {
+		Entry previous = byIsbn.remove(isbn);
+		if (previous != null) {
+			leading.keySet().removeAll(previous.leadingKeys);
+			inner.keySet().removeAll(previous.innerKeys);
+		}
+	}
+
+	/**
+	 * Compute the keys for one title or author name.
+	 */
+	private static void addKeys(String text, String isbn, Set<String> leadingKeys, Set<String> innerKeys) {
+		String normalized = TextKeys.normalize(text);
+		if (normalized.isEmpty()) {
+			return;
+		}
+		leadingKeys.add(normalized + SEPARATOR + isbn);
+		int words = 0;
+		for (int i = normalized.indexOf(' '); i >= 0 && words < MAX_WORDS; i = normalized.indexOf(' ', i + 1)) {
+			innerKeys.add(normalized.substring(i + 1) + SEPARATOR + isbn);
+			words++;
+		}
+	}
+
+	/**
+	 * Suggest books whose title or author name, or a word in it, starts with the prefix.
+	 * @param prefix typed text; case, accents and punctuation are ignored
+	 * @param limit maximum number of suggestions
+	 * @return suggestions in rank order, one per book
+	 */
+	public List<Suggestion> suggest(String prefix, int limit) {
+		String key = TextKeys.normalize(prefix);
+		if (key.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+		Map<String, Suggestion> found = new LinkedHashMap<>();
+		collect(leading, key, limit, found);
+		collect(inner, key, limit, found);
+		return new ArrayList<>(found.values());
+	}
+
+	private void collect(ConcurrentSkipListMap<String, String> keys, String prefix, int limit, Map<String, Suggestion> found) {
+		for (String isbn : keys.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+			if (found.size() >= limit) {
+				return;
+			}
+			if (!found.containsKey(isbn)) {
+				Entry entry = byIsbn.get(isbn);
+				if (entry != null) {
+					found.put(isbn, entry.suggestion);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of indexed books
+	 */
+	public int size() {
+		return byIsbn.size();
+	}
+}
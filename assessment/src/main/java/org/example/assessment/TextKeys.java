@@ -0,0 +1,29 @@
+package org.example.assessment;
+
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Normalization of free text, such as titles and author names, into keys for
+ * the in-memory lookup structures.
+ */
+final class TextKeys {
+
+	private TextKeys() {}
+
+	/**
+	 * Normalize text for case-, accent- and punctuation-insensitive matching,
+	 * e.g. "Dr. Seuss" becomes "dr seuss".
+	 * @param text text to normalize, may be null
+	 * @return the normalized key, empty for null input
+	 */
+	static String normalize(String text) {
+		if (text == null) {
+			return "";
+		}
+		String key = StringUtils.stripAccents(text).toLowerCase(Locale.ROOT);
+		key = key.replaceAll("[^\\p{L}\\p{N}]+", " ");
+		return StringUtils.normalizeSpace(key);
+	}
+}
@@ -0,0 +1,30 @@
+package org.example.assessment;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * Thrown when a book is saved with an expected version that does not match
+ * the stored one, i.e. somebody else updated (or created) the book first.
+ */
+public class VersionConflictException extends RepositoryException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long expectedVersion;
+	private final long storedVersion;
+
+	public VersionConflictException(String isbn, long expectedVersion, long storedVersion) {
+		super("Version conflict for ISBN " + isbn + ": expected version " + expectedVersion + " but found "
+				+ storedVersion);
+		this.expectedVersion = expectedVersion;
+		this.storedVersion = storedVersion;
+	}
+
+	public long getExpectedVersion() {
+		return expectedVersion;
+	}
+
+	public long getStoredVersion() {
+		return storedVersion;
+	}
+}
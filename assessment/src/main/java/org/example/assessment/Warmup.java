@@ -0,0 +1,112 @@
+package org.example.assessment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Startup warm-up of the module's caches and the repository. Runs after the
+ * in-memory indexes have been built, which already reads every book in every
+ * shard folder, and then
+ * <ol>
+ * <li>preloads the ISBNs that were requested most in the previous run, filling
+ * the payload cache, and</li>
+ * <li>executes the configured queries and the most common queries of the
+ * previous run, filling the query cache and the search index caches.</li>
+ * </ol>
+ * Each step stops when the deadline is reached.
+ */
+public class Warmup {
+
+	private static final Logger log = LoggerFactory.getLogger(Warmup.class);
+
+	private final BooksModule module;
+	private final BooksConfig config;
+	private final long deadline;
+
+	/**
+	 * @param module the module to warm up
+	 * @param deadline time in milliseconds at which the warm-up stops
+	 */
+	public Warmup(BooksModule module, long deadline) {
+		this.module = module;
+		this.config = module.getConfig();
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Run all warm-up steps.
+	 * @param session the session to warm up with
+	 * @throws RepositoryException
+	 */
+	public void run(Session session) throws RepositoryException {
+		long start = System.currentTimeMillis();
+		int isbns = preloadBooks(session);
+		int queries = runQueries(session);
+		log.info("Warm-up done in {} ms: {} books, {} queries{}", System.currentTimeMillis() - start, isbns, queries,
+				expired() ? " (time limit reached)" : "");
+	}
+
+	private int preloadBooks(Session session) throws RepositoryException {
+		int count = 0;
+		for (String isbn : module.getStats().getIsbns().topKeys(config.getWarmupTopIsbns())) {
+			if (expired()) {
+				break;
+			}
+			try {
+				if (module.getPayloadCache() != null) {
+					module.loadPayload(session, isbn);
+				}
+				else {
+					module.loadBook(session, isbn, Book.FIELD_PROPERTIES.values());
+				}
+				count++;
+			}
+			catch (IOException | RuntimeException e) {
+				log.debug("Unable to preload ISBN {}: {}", isbn, e.getMessage());
+			}
+		}
+		return count;
+	}
+
+	private int runQueries(Session session) throws RepositoryException {
+		Set<String> keys = new LinkedHashSet<>();
+		for (String query : config.getWarmupQueries()) {
+			keys.add(QueryCache.normalize(query));
+		}
+		keys.addAll(module.getStats().getQueries().topKeys(config.getWarmupTopQueries()));
+
+		int count = 0;
+		QueryCache cache = module.getQueryCache();
+		for (String key : keys) {
+			if (expired()) {
+				break;
+			}
+			try {
+				long generation = cache.getGeneration();
+				List<String> isbns = new ArrayList<>();
+				// Keys only collapse whitespace, so they match the same books as the queries themselves
+				BooksModule.executeQuery(session, key, Collections.singleton(Book.ISBN), isbns);
+				cache.put(key, isbns, generation);
+				count++;
+			}
+			catch (RepositoryException | RuntimeException e) {
+				log.debug("Unable to run warm-up query '{}': {}", key, e.getMessage());
+			}
+		}
+		return count;
+	}
+
+	private boolean expired() {
+		return System.currentTimeMillis() >= deadline;
+	}
+}
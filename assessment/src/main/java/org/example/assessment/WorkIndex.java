@@ -0,0 +1,94 @@
+package org.example.assessment;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory grouping of editions by work, maintained from book change events
+ * like the {@link AuthorIndex}. Books share a work when their
+ * {@link Book#getWorkKey() work keys} are equal; books without a title are
+ * not grouped.
+ */
+public class WorkIndex implements BookChangeListener {
+
+	/**
+	 * Indexed state of a single book.
+	 */
+	private static class Entry {
+		final long version;
+		final String workKey;
+
+		Entry(long version, String workKey) {
+			this.version = version;
+			this.workKey = workKey;
+		}
+	}
+
+	private final Map<String, Set<String>> byWork = new ConcurrentHashMap<>();
+	private final Map<String, Entry> byIsbn = new ConcurrentHashMap<>();
+
+	@Override
+	public synchronized void bookSaved(Book book) {
+		String isbn = book.getISBN();
+		long version = book.getVersion() != null ? book.getVersion() : 0L;
+		Entry previous = byIsbn.get(isbn);
+		if (previous != null && previous.version > version) {
+			// A newer state has been indexed already
+			return;
+		}
+
+		String workKey = book.getWorkKey();
+		if (previous != null && previous.workKey != null && !previous.workKey.equals(workKey)) {
+			unlink(previous.workKey, isbn);
+		}
+		if (workKey != null) {
+			byWork.computeIfAbsent(workKey, k -> ConcurrentHashMap.newKeySet()).add(isbn);
+		}
+		byIsbn.put(isbn, new Entry(version, workKey));
+	}
+
+	@Override
+	public synchronized void bookRemoved(String isbn) {
+		Entry previous = byIsbn.remove(isbn);
+		if (previous != null && previous.workKey != null) {
+			unlink(previous.workKey, isbn);
+		}
+	}
+
+	private void unlink(String workKey, String isbn) {
+		Set<String> isbns = byWork.get(workKey);
+		if (isbns != null) {
+			isbns.remove(isbn);
+			if (isbns.isEmpty()) {
+				byWork.remove(workKey);
+			}
+		}
+	}
+
+	/**
+	 * @param isbn sanitized ISBN
+	 * @return the work key of an indexed book, or null if it is unknown or not grouped
+	 */
+	public String getWorkKey(String isbn) {
+		Entry entry = byIsbn.get(isbn);
+		return entry != null ? entry.workKey : null;
+	}
+
+	/**
+	 * @param workKey a work key
+	 * @return ISBNs of the indexed editions of the work, possibly empty
+	 */
+	public Set<String> getEditions(String workKey) {
+		Set<String> isbns = byWork.get(workKey);
+		return isbns != null ? Collections.unmodifiableSet(isbns) : Collections.<String>emptySet();
+	}
+
+	/**
+	 * @return number of works with at least one indexed edition
+	 */
+	public int size() {
+		return byWork.size();
+	}
+}
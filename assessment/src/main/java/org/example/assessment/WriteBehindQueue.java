@@ -0,0 +1,365 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemExistsException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded write-behind buffer for book updates. Accepted books are kept in
+ * memory, where a later update of the same ISBN replaces the earlier one, and
+ * a single background writer stores them in batches through its own
+ * dedicated session.
+ * <p>
+ * Every accepted batch gets a receipt number. Receipts are handed out in
+ * increasing order, and a receipt is reported as stored once every update
+ * accepted up to and including it has been written. A later update of a
+ * queued ISBN is merged into the queued one field by field, as consecutive
+ * saves would be, keeping the expected version of the earlier update; the
+ * merged update carries the receipts of both, so they are stored or fail
+ * together.
+ */
+public class WriteBehindQueue {
+
+	/**
+	 * Processing state of a receipt.
+	 */
+	public enum Status { UNKNOWN, PENDING, STORED, FAILED }
+
+	/**
+	 * Number of receipts with failed books that are remembered for status lookups
+	 */
+	private static final int FAILED_RECEIPTS_RETAINED = 1000;
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+	/**
+	 * A queued update and the receipts of the requests that supplied it, oldest first.
+	 */
+	private static class Pending {
+		final Book book;
+		final List<Long> receipts = new ArrayList<>(1);
+
+		Pending(Book book, long receipt) {
+			this.book = book;
+			this.receipts.add(receipt);
+		}
+
+		/**
+		 * @return the receipt of the oldest request merged into this update
+		 */
+		long firstReceipt() {
+			return receipts.get(0);
+		}
+
+		/**
+		 * Merge a later update of the same ISBN into this one.
+		 */
+		void merge(Pending later) {
+			book.merge(later.book);
+			receipts.addAll(later.receipts);
+		}
+	}
+
+	private final BooksModule module;
+	private final int capacity;
+	private final int batchSize;
+	private final ScheduledExecutorService writer;
+
+	/**
+	 * Queued updates by ISBN, in order of first arrival. Guarded by this.
+	 */
+	private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+	/**
+	 * Updates taken from the queue that are being written right now. Guarded by this.
+	 */
+	private List<Pending> inFlight = Collections.emptyList();
+
+	/**
+	 * Last receipt handed out. Guarded by this.
+	 */
+	private long lastReceipt;
+
+	/**
+	 * Receipts for which at least one book could not be stored. Guarded by this.
+	 */
+	private final Map<Long, Boolean> failedReceipts = new LinkedHashMap<Long, Boolean>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+			return size() > FAILED_RECEIPTS_RETAINED;
+		}
+	};
+
+	/**
+	 * Writer session, only ever used from the writer thread
+	 */
+	private Session session;
+
+	/**
+	 * @param module the module providing the writer session and books root
+	 * @param capacity maximum number of distinct ISBNs waiting to be stored
+	 * @param batchSize maximum number of books per session save
+	 * @param flushInterval delay in milliseconds between flushes
+	 */
+	public WriteBehindQueue(BooksModule module, int capacity, int batchSize, long flushInterval) {
+		this.module = module;
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.writer = Executors.newSingleThreadScheduledExecutor(BooksModule.namedThreadFactory("books-write-behind"));
+		writer.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queue a batch of validated books for storage. The batch is accepted or
+	 * rejected as a whole.
+	 * @param books books to store
+	 * @return the receipt for the batch, or -1 if the queue has no room for it
+	 */
+	public synchronized long offer(List<Book> books) {
+		int added = 0;
+		for (Book book : books) {
+			if (!pending.containsKey(book.getISBN())) {
+				added++;
+			}
+		}
+		if (pending.size() + added > capacity) {
+			return -1;
+		}
+
+		long receipt = ++lastReceipt;
+		for (Book book : books) {
+			Pending update = new Pending(book, receipt);
+			Pending queued = pending.get(book.getISBN());
+			if (queued != null) {
+				queued.merge(update);
+			}
+			else {
+				pending.put(book.getISBN(), update);
+			}
+		}
+		return receipt;
+	}
+
+	/**
+	 * @param receipt a receipt returned by {@link #offer(List)}
+	 * @return the processing state of all updates accepted with that receipt
+	 */
+	public synchronized Status getStatus(long receipt) {
+		if (receipt <= 0 || receipt > lastReceipt) {
+			return Status.UNKNOWN;
+		}
+		if (failedReceipts.containsKey(receipt)) {
+			return Status.FAILED;
+		}
+		for (Pending update : pending.values()) {
+			if (update.firstReceipt() <= receipt) {
+				return Status.PENDING;
+			}
+		}
+		for (Pending update : inFlight) {
+			if (update.firstReceipt() <= receipt) {
+				return Status.PENDING;
+			}
+		}
+		return Status.STORED;
+	}
+
+	/**
+	 * @return number of distinct ISBNs waiting to be stored
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	/**
+	 * @return maximum number of distinct ISBNs waiting to be stored
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Stop the writer, storing whatever is still queued first.
+	 */
+	public void shutdown() {
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+				log.warn("Write-behind flush still running at shutdown");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		while (size() > 0 && flushBatch()) {
+			// drain
+		}
+		if (size() > 0) {
+			log.error("Write-behind queue shut down with {} unsaved books", size());
+		}
+		closeSession();
+	}
+
+	/**
+	 * Store everything that is queued right now, batch by batch.
+	 */
+	void flush() {
+		int batches = (size() + batchSize - 1) / batchSize;
+		for (int i = 0; i < batches && flushBatch(); i++) {
+			// continue with the next batch
+		}
+	}
+
+	/**
+	 * Store a single batch of queued books.
+	 * @return false if the repository is unavailable and flushing should stop for now
+	 */
+	private boolean flushBatch() {
+		List<Pending> batch = takeBatch();
+		if (batch.isEmpty()) {
+			return true;
+		}
+		List<String> isbns = new ArrayList<>(batch.size());
+		for (Pending update : batch) {
+			isbns.add(update.book.getISBN());
+		}
+		// Number of books at the head of the batch that are done, stored or failed
+		int done = 0;
+		try (ShardLocks.Held locks = module.getShardLocks().lock(isbns)) {
+			Node booksRoot = getBooksRoot();
+			try {
+				for (Pending update : batch) {
+					update.book.save(booksRoot);
+				}
+				session.save();
+			}
+			catch (RepositoryException | IllegalStateException e) {
+				// Isolate the offending books by storing them one at a time
+				session.refresh(false);
+				log.debug("Write-behind batch of {} failed, storing individually: {}", batch.size(), e.getMessage());
+				for (Pending update : batch) {
+					saveSingle(booksRoot, update);
+					done++;
+				}
+			}
+			done = batch.size();
+			module.getChangeDispatcher().refresh(booksRoot, isbns);
+			return true;
+		}
+		catch (RepositoryException e) {
+			List<Pending> unsaved = batch.subList(done, batch.size());
+			log.error("Write-behind flush failed, requeueing " + unsaved.size() + " books", e);
+			requeue(unsaved);
+			closeSession();
+			return false;
+		}
+		finally {
+			completed();
+		}
+	}
+
+	/**
+	 * Store a single book, retrying once if a concurrent writer got there first. Any other
+	 * failure to store it, e.g. a constraint violation, only fails its own receipt.
+	 * @throws RepositoryException if the session can't even be refreshed, so the repository is
+	 *             unavailable rather than the book at fault
+	 */
+	private void saveSingle(Node booksRoot, Pending update) throws RepositoryException {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				update.book.save(booksRoot);
+				session.save();
+				return;
+			}
+			catch (InvalidItemStateException | ItemExistsException e) {
+				session.refresh(false);
+				if (attempt >= 2) {
+					failed(update, e);
+					return;
+				}
+			}
+			catch (RepositoryException | IllegalStateException e) {
+				session.refresh(false);
+				failed(update, e);
+				return;
+			}
+		}
+	}
+
+	private synchronized void failed(Pending update, Exception e) {
+		log.warn("Write-behind update of ISBN {} (receipts {}) failed: {}", update.book.getISBN(), update.receipts,
+				e.getMessage());
+		for (Long receipt : update.receipts) {
+			failedReceipts.put(receipt, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Remove up to one batch of updates from the head of the queue.
+	 */
+	private synchronized List<Pending> takeBatch() {
+		List<Pending> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+		for (Iterator<Pending> updates = pending.values().iterator(); updates.hasNext() && batch.size() < batchSize;) {
+			batch.add(updates.next());
+			updates.remove();
+		}
+		inFlight = batch;
+		return batch;
+	}
+
+	private synchronized void completed() {
+		inFlight = Collections.emptyList();
+	}
+
+	/**
+	 * Put back updates that could not be written ahead of the queue, merging the updates of the
+	 * same ISBNs that arrived meanwhile into them.
+	 */
+	private synchronized void requeue(List<Pending> batch) {
+		LinkedHashMap<String, Pending> newer = new LinkedHashMap<>(pending);
+		pending.clear();
+		for (Pending update : batch) {
+			pending.put(update.book.getISBN(), update);
+		}
+		for (Pending update : newer.values()) {
+			Pending requeued = pending.get(update.book.getISBN());
+			if (requeued != null) {
+				requeued.merge(update);
+			}
+			else {
+				pending.put(update.book.getISBN(), update);
+			}
+		}
+	}
+
+	private Node getBooksRoot() throws RepositoryException {
+		if (session == null || !session.isLive()) {
+			session = module.loginSystemSession();
+		}
+		return module.getBooksRoot(session);
+	}
+
+	private void closeSession() {
+		if (session != null) {
+			session.logout();
+			session = null;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package org.example.assessment;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+/**
+ * Round trips through the JSON mapping of the REST API, {@link BooksModule#createObjectMapper()}.
+ */
+public class BookJsonTest {
+
+	private final ObjectMapper mapper = BooksModule.createObjectMapper();
+
+	@Test
+	public void test_RoundTrip() throws Exception {
+		Book book = new CatalogGenerator(42, 20).nextBook();
+		book.setVersion(3L);
+		String json = mapper.writeValueAsString(book);
+		Book read = mapper.readValue(json, Book.class);
+		Assert.assertEquals(book.getISBN(), read.getISBN());
+		Assert.assertEquals(book.getTitle(), read.getTitle());
+		Assert.assertEquals(book.getAuthor(), read.getAuthor());
+		Assert.assertEquals(book.getPublicationDate().getTimeInMillis(), read.getPublicationDate().getTimeInMillis());
+		Assert.assertEquals(book.getShortDescription(), read.getShortDescription());
+		Assert.assertEquals(Long.valueOf(3), read.getVersion());
+		Assert.assertEquals("same output for the same book", json, mapper.writeValueAsString(read));
+	}
+
+	@Test
+	public void test_DatesAreIsoAndMillisAreAccepted() throws Exception {
+		Book book = mapper.readValue("{\"isbn\":\"978-0-399-22690-8\",\"publicationDate\":\"764417364669\","
+				+ "\"firstPublicationDate\":-31536000000,\"author\":[\"Eric Carle\"]}", Book.class);
+		Assert.assertEquals("9780399226908", book.getISBN());
+		Assert.assertEquals(764417364669L, book.getPublicationDate().getTimeInMillis());
+		Assert.assertEquals(Arrays.asList("Eric Carle"), book.getAuthor());
+		String json = mapper.writeValueAsString(book);
+		Assert.assertTrue(json, json.contains("\"publicationDate\":\"1994-03-23T10:09:24.669+00:00\""));
+		Assert.assertTrue(json, json.contains("\"firstPublicationDate\":\"1969-01-01T00:00:00.000+00:00\""));
+
+		Calendar date = mapper.readValue("{\"publicationDate\":\"1969-06-03\"}", Book.class).getPublicationDate();
+		Assert.assertEquals(-18316800000L, date.getTimeInMillis());
+		date = mapper.readValue("{\"publicationDate\":\"1969-06-03T02:00:00+02:00\"}", Book.class).getPublicationDate();
+		Assert.assertEquals(-18316800000L, date.getTimeInMillis());
+	}
+
+	@Test
+	public void test_ImpossibleDatesRejected() throws Exception {
+		for (String date : new String[] { "2020-13-01T00:00:00.000Z", "2020-02-30T00:00:00.000Z", "2020-01-01T24:00:00.000Z" }) {
+			try {
+				mapper.readValue("{\"publicationDate\":\"" + date + "\"}", Book.class);
+				Assert.fail("impossible date accepted: " + date);
+			}
+			catch (InvalidFormatException e) {
+				// Bad input, not a server error
+				Assert.assertEquals(date, e.getValue());
+			}
+		}
+	}
+
+	@Test
+	public void test_UnknownFieldRejected() throws Exception {
+		try {
+			mapper.readValue("{\"isbn\":\"9780399226908\",\"pages\":[1,2]}", Book.class);
+			Assert.fail("unknown field accepted");
+		}
+		catch (MismatchedInputException e) {
+			// Default mapping, FAIL_ON_UNKNOWN_PROPERTIES
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package org.example.assessment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onehippo.cms7.services.HippoServiceRegistry;
+import org.onehippo.repository.RepositoryService;
+import org.onehippo.repository.jaxrs.RepositoryJaxrsServlet;
+import org.onehippo.repository.testutils.PortUtil;
+import org.onehippo.repository.testutils.RepositoryTestCase;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Load-testing harness for the books API, using the same embedded Tomcat setup
+ * as {@link JaxrsTest}. A synthetic catalog is stored first, after which a mixed
+ * read/search/write/list workload is driven at a fixed target rate and
+ * throughput and latency percentiles are reported per operation.
+ *
+ * The defaults make for a short smoke run; override them for real measurements, e.g.
+ * <pre>mvn test -Dtest=BooksLoadTest -Dbooks.load.catalogSize=100000 -Dbooks.load.rate=500 -Dbooks.load.durationSeconds=300</pre>
+ */
+public class BooksLoadTest extends RepositoryTestCase {
+
+	/**
+	 * Operations of the generated workload.
+	 */
+	enum Operation { READ, SEARCH, WRITE, LIST }
+
+	private static final int CATALOG_SIZE = Integer.getInteger("books.load.catalogSize", 300);
+	private static final int RATE = Integer.getInteger("books.load.rate", 50);
+	private static final int DURATION_SECONDS = Integer.getInteger("books.load.durationSeconds", 5);
+	private static final int THREADS = Integer.getInteger("books.load.threads", 8);
+	private static final long SEED = Long.getLong("books.load.seed", 42L);
+	private static final String MIX = System.getProperty("books.load.mix", "read=70,search=15,write=10,list=5");
+	private static final int STORE_BATCH_SIZE = 100;
+
+	private static Tomcat tomcat;
+	private static String baseUrl;
+	private static final String AUTHORIZATION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@ClassRule
+	public static TemporaryFolder tmpTomcatFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setupTomcat() throws LifecycleException {
+		String tmpTomcatFolderName = tmpTomcatFolder.getRoot().getAbsolutePath();
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(tmpTomcatFolderName);
+		int portNumber = PortUtil.getPortNumber(BooksLoadTest.class);
+		tomcat.setPort(portNumber);
+		tomcat.getConnector(); // Trigger the creation of the default connector
+		Context context = tomcat.addContext("/cms", tmpTomcatFolderName);
+		Tomcat.addServlet(context, "RepositoryJaxrsServlet", new RepositoryJaxrsServlet());
+		context.addServletMappingDecoded("/ws/*", "RepositoryJaxrsServlet");
+		tomcat.start();
+		baseUrl = "http://localhost:" + portNumber + "/cms/ws";
+	}
+
+	@AfterClass
+	public static void tearDownTomcat() throws LifecycleException {
+		tomcat.stop();
+		tomcat.destroy();
+	}
+
+	@Before
+	public void before() {
+		if (HippoServiceRegistry.getService(RepositoryService.class) == null) {
+			HippoServiceRegistry.register((RepositoryService)server.getRepository(), RepositoryService.class);
+		}
+	}
+
+	@After
+	@Override
+	public void tearDown() throws Exception {
+		removeNode("/books");
+		super.tearDown(); // removes /test node and checks repository clean state
+	}
+
+	@Test
+	public void test_MixedWorkload() throws Exception {
+		CatalogGenerator generator = new CatalogGenerator(SEED, Math.max(1, CATALOG_SIZE / 3));
+		List<Book> catalog = generator.generate(CATALOG_SIZE);
+
+		long storeStart = System.nanoTime();
+		for (int i = 0; i < catalog.size(); i += STORE_BATCH_SIZE) {
+			List<Book> batch = catalog.subList(i, Math.min(i + STORE_BATCH_SIZE, catalog.size()));
+			Assert.assertEquals("catalog store status", 200, request("PUT", "/books", mapper.writeValueAsBytes(batch)));
+		}
+		log.info("Stored {} synthetic books in {} ms", catalog.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - storeStart));
+
+		Workload workload = new Workload(generator, catalog);
+		workload.run();
+		workload.report();
+		Assert.assertEquals("requests failed with a server error", 0, workload.serverErrors.get());
+	}
+
+	/**
+	 * Issue a single request.
+	 * @return the HTTP status code
+	 */
+	private int request(String method, String path, byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Authorization", AUTHORIZATION);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+		}
+		int status = connection.getResponseCode();
+		// Drain the body so the connection can be reused
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			if (in != null) {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1) {
+					// discard
+				}
+			}
+		}
+		return status;
+	}
+
+	/**
+	 * Open-loop workload: requests are started on a fixed schedule regardless
+	 * of how fast earlier ones complete, so a slow server shows up as latency
+	 * instead of silently lowering the offered rate.
+	 */
+	private class Workload {
+		private final CatalogGenerator generator;
+		private final List<String> isbns = Collections.synchronizedList(new ArrayList<String>());
+		private final Operation[] schedule = new Operation[100];
+		private final Map<Operation, Latencies> latencies = new EnumMap<>(Operation.class);
+		private final AtomicLong serverErrors = new AtomicLong();
+		private final AtomicLong throttled = new AtomicLong();
+		private final AtomicLong issued = new AtomicLong();
+		private long elapsedNanos;
+
+		Workload(CatalogGenerator generator, List<Book> catalog) {
+			this.generator = generator;
+			for (Book book : catalog) {
+				isbns.add(book.getISBN());
+			}
+			int slot = 0;
+			for (String part : MIX.split(",")) {
+				String[] weight = part.trim().split("=");
+				Operation operation = Operation.valueOf(weight[0].trim().toUpperCase());
+				for (int i = Integer.parseInt(weight[1].trim()); i > 0 && slot < schedule.length; i--) {
+					schedule[slot++] = operation;
+				}
+				latencies.put(operation, new Latencies());
+			}
+			// Pad a mix that adds up to less than 100 with reads
+			latencies.putIfAbsent(Operation.READ, new Latencies());
+			Arrays.fill(schedule, slot, schedule.length, Operation.READ);
+		}
+
+		void run() throws InterruptedException {
+			final Random random = new Random(SEED);
+			ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+			ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+			long periodNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, RATE);
+			long start = System.nanoTime();
+			scheduler.scheduleAtFixedRate(() -> {
+				final Operation operation = schedule[random.nextInt(schedule.length)];
+				issued.incrementAndGet();
+				workers.execute(() -> execute(operation));
+			}, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+			Thread.sleep(TimeUnit.SECONDS.toMillis(DURATION_SECONDS));
+			scheduler.shutdownNow();
+			workers.shutdown();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+			elapsedNanos = System.nanoTime() - start;
+		}
+
+		private void execute(Operation operation) {
+			long start = System.nanoTime();
+			try {
+				int status;
+				switch (operation) {
+				case READ:
+					status = request("GET", "/books/" + isbns.get(ThreadLocalRandom.current().nextInt(isbns.size())), null);
+					break;
+				case SEARCH:
+					status = request("GET", "/books/search?q=" + URLEncoder.encode(generator.searchTerm(), "UTF-8"), null);
+					break;
+				case WRITE:
+					Book book = generator.nextBook();
+					status = request("PUT", "/books", mapper.writeValueAsBytes(Collections.singletonList(book)));
+					isbns.add(book.getISBN());
+					break;
+				default:
+					status = request("GET", "/books", null);
+				}
+				if (status == 429) {
+					throttled.incrementAndGet();
+				}
+				else if (status >= 500) {
+					serverErrors.incrementAndGet();
+				}
+			}
+			catch (IOException e) {
+				log.warn("{} request failed: {}", operation, e.toString());
+				serverErrors.incrementAndGet();
+			}
+			latencies.get(operation).record(System.nanoTime() - start);
+		}
+
+		void report() {
+			double seconds = elapsedNanos / 1e9;
+			log.info("Load test: catalog={} targetRate={}/s threads={} mix={}", CATALOG_SIZE, RATE, THREADS, MIX);
+			log.info("Load test: issued={} in {} s, throughput={}/s, serverErrors={}, throttled={}", issued.get(),
+					String.format("%.1f", seconds), String.format("%.1f", issued.get() / seconds), serverErrors.get(),
+					throttled.get());
+			for (Map.Entry<Operation, Latencies> entry : latencies.entrySet()) {
+				log.info("Load test: {} {}", entry.getKey(), entry.getValue().summary());
+			}
+		}
+	}
+
+	/**
+	 * Latency samples of a single operation type.
+	 */
+	private static class Latencies {
+		private long[] samples = new long[1024];
+		private int count;
+
+		synchronized void record(long nanos) {
+			if (count == samples.length) {
+				samples = Arrays.copyOf(samples, count * 2);
+			}
+			samples[count++] = nanos;
+		}
+
+		synchronized String summary() {
+			if (count == 0) {
+				return "count=0";
+			}
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			return String.format("count=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms", count,
+					percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+					sorted[count - 1] / 1e6);
+		}
+
+		private static double percentile(long[] sorted, double fraction) {
+			int index = (int) Math.ceil(fraction * sorted.length) - 1;
+			return sorted[Math.max(0, index)] / 1e6;
+		}
+	}
+}
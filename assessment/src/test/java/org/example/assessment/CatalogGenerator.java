@@ -0,0 +1,168 @@
+package org.example.assessment;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Reproducible generator of synthetic book catalogs for load tests. The same
+ * seed always yields the same catalog.
+ */
+public class CatalogGenerator {
+
+	private static final String[] FIRST_NAMES = { "Anna", "Ben", "Carla", "David", "Eric", "Fatima", "Georg", "Hana",
+			"Ivan", "Julia", "Kenji", "Laura", "Mateo", "Nina", "Omar", "Priya", "Quentin", "Rosa", "Sven", "Tara" };
+	private static final String[] LAST_NAMES = { "Adams", "Berg", "Carle", "Dubois", "Eriksen", "Fischer", "Garcia",
+			"Hansen", "Ito", "Jansen", "Kowalski", "Larsen", "Martin", "Novak", "Okafor", "Peters", "Rossi", "Silva",
+			"Tanaka", "Weber" };
+	private static final String[] WORDS = { "dragon", "caterpillar", "places", "journey", "secret", "garden", "river",
+			"night", "winter", "summer", "castle", "forest", "ocean", "star", "shadow", "light", "city", "island", "king",
+			"queen", "storm", "silver", "golden", "hidden", "last", "first", "little", "great", "lost", "wild", "tacos",
+			"moon", "mountain", "letter", "house", "road", "song", "dream", "fire", "glass" };
+
+	private final Random random;
+	private final Set<String> usedIsbns = new HashSet<>();
+	private final List<String> authors = new ArrayList<>();
+
+	/**
+	 * @param seed random seed, so that runs can be reproduced
+	 * @param authorCount size of the author pool that books draw from
+	 */
+	public CatalogGenerator(long seed, int authorCount) {
+		this.random = new Random(seed);
+		for (int i = 0; i < authorCount; i++) {
+			authors.add(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+					+ LAST_NAMES[random.nextInt(LAST_NAMES.length)] + (i >= FIRST_NAMES.length ? " " + i : ""));
+		}
+	}
+
+	/**
+	 * Generate a list of books with distinct ISBNs.
+	 * @param size number of books
+	 */
+	public List<Book> generate(int size) {
+		List<Book> books = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			books.add(nextBook());
+		}
+		return books;
+	}
+
+	/**
+	 * Generate a single book with an ISBN not handed out before by this generator.
+	 */
+	public synchronized Book nextBook() {
+		Book book = new Book();
+		book.setISBN(nextIsbn());
+		book.setTitle(capitalize(words(2 + random.nextInt(6))));
+		book.setAuthor(nextAuthors());
+
+		Calendar publicationDate = Calendar.getInstance();
+		publicationDate.clear();
+		publicationDate.set(1950 + random.nextInt(75), random.nextInt(12), 1 + random.nextInt(28));
+		book.setPublicationDate(publicationDate);
+		if (random.nextInt(4) == 0) {
+			// Later edition of an older work
+			Calendar firstPublicationDate = (Calendar) publicationDate.clone();
+			firstPublicationDate.add(Calendar.YEAR, -1 - random.nextInt(40));
+			book.setFirstPublicationDate(firstPublicationDate);
+		}
+
+		book.setShortDescription(description());
+		return book;
+	}
+
+	/**
+	 * Pick a word that occurs in generated titles and descriptions, for search workloads.
+	 */
+	public synchronized String searchTerm() {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	/**
+	 * Generate a valid ISBN-13. Prefixes and registration groups roughly follow
+	 * the real distribution: mostly 978, dominated by the English-language groups.
+	 */
+	String nextIsbn() {
+		String isbn;
+		do {
+			StringBuilder digits = new StringBuilder(13);
+			digits.append(random.nextInt(10) == 0 ? "979" : "978");
+			int group = random.nextInt(100);
+			if (group < 60) {
+				digits.append(random.nextBoolean() ? '0' : '1');
+			}
+			else if (group < 70) {
+				digits.append('3');
+			}
+			else if (group < 78) {
+				digits.append('2');
+			}
+			else if (group < 83) {
+				digits.append('4');
+			}
+			while (digits.length() < 12) {
+				digits.append((char) ('0' + random.nextInt(10)));
+			}
+			digits.append(checkDigit(digits));
+			isbn = digits.toString();
+		} while (!usedIsbns.add(isbn));
+		return isbn;
+	}
+
+	/**
+	 * ISBN-13 check digit over the first 12 digits.
+	 */
+	static char checkDigit(CharSequence digits) {
+		int sum = 0;
+		for (int i = 0; i < 12; i++) {
+			sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+		}
+		return (char) ('0' + (10 - sum % 10) % 10);
+	}
+
+	/**
+	 * One to four authors, skewed towards a few prolific ones.
+	 */
+	private String[] nextAuthors() {
+		int roll = random.nextInt(100);
+		int count = roll < 70 ? 1 : roll < 90 ? 2 : roll < 97 ? 3 : 4;
+		Set<String> result = new LinkedHashSet<>();
+		while (result.size() < Math.min(count, authors.size())) {
+			double skewed = Math.pow(random.nextDouble(), 2);
+			result.add(authors.get((int) (skewed * authors.size())));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * Description of a few hundred up to several thousand characters.
+	 */
+	private String description() {
+		int sentences = 3 + (int) Math.abs(random.nextGaussian() * 15);
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < sentences; i++) {
+			description.append(capitalize(words(6 + random.nextInt(14)))).append(". ");
+		}
+		return description.toString().trim();
+	}
+
+	private String words(int count) {
+		StringBuilder words = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				words.append(' ');
+			}
+			words.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return words.toString();
+	}
+
+	private static String capitalize(String text) {
+		return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+	}
+}
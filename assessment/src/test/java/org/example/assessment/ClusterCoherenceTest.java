@@ -0,0 +1,169 @@
+package org.example.assessment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Cache coherence between two cluster nodes sharing a journal, simulated in
+ * memory: each node has its own view of the repository, which is brought up
+ * to date by replaying the journal, after which the observation events are
+ * delivered to the node's change stamps and payload cache in the same order
+ * as {@link BookChangeDispatcher} does. Replaying and delivering are separate
+ * steps, so reads can be interleaved with them like on a real cluster node.
+ */
+public class ClusterCoherenceTest {
+
+	private static final String ISBN = "9780803736801";
+	private static final long KEY = Book.getISBNKey(ISBN);
+
+	/**
+	 * Book versions written by all nodes, in order; a version of 0 means removed.
+	 */
+	private final List<long[]> journal = new ArrayList<>();
+
+	private class ClusterNode {
+		final Map<Long, Long> view = new HashMap<>();
+		final ChangeStamps stamps = new ChangeStamps(1024);
+		final BookPayloadCache cache = new BookPayloadCache(1024 * 1024, 64 * 1024, stamps);
+		final List<BookChangeListener> listeners = Arrays.asList(stamps, cache);
+		final List<long[]> pendingEvents = new ArrayList<>();
+		int position;
+
+		void write(long version) {
+			journal.add(new long[] { KEY, version });
+			sync();
+			deliverEvents();
+		}
+
+		/**
+		 * Apply new journal records to the view, queueing their events.
+		 */
+		void sync() {
+			for (; position < journal.size(); position++) {
+				long[] record = journal.get(position);
+				if (record[1] == 0) {
+					view.remove(record[0]);
+				}
+				else {
+					view.put(record[0], record[1]);
+				}
+				pendingEvents.add(record);
+			}
+		}
+
+		void deliverEvents() {
+			for (long[] event : pendingEvents) {
+				for (BookChangeListener listener : listeners) {
+					if (event[1] == 0) {
+						listener.bookRemoved(ISBN);
+					}
+					else {
+						Book book = new Book();
+						book.setISBN(ISBN);
+						book.setVersion(event[1]);
+						listener.bookSaved(book);
+					}
+				}
+			}
+			pendingEvents.clear();
+		}
+
+		/**
+		 * Read through the payload cache, like {@link BooksModule#loadPayload}.
+		 * @return the version served, or 0 if there is no such book
+		 */
+		long read() {
+			BookPayloadCache.Payload payload = cache.get(KEY);
+			if (payload != null) {
+				return payload.getVersion();
+			}
+			long stamp = cache.getStamp(KEY);
+			Long version = view.get(KEY);
+			if (version == null) {
+				return 0;
+			}
+			cache.put(KEY, version, json(version), stamp);
+			return version;
+		}
+	}
+
+	private static byte[] json(long version) {
+		return ("{\"isbn\":\"" + ISBN + "\",\"version\":" + version + "}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void test_WriteOnOtherNodeInvalidates() {
+		ClusterNode a = new ClusterNode();
+		ClusterNode b = new ClusterNode();
+		a.write(1);
+		b.sync();
+		b.deliverEvents();
+		Assert.assertEquals("first read loads", 1, b.read());
+		Assert.assertEquals(1, b.read());
+		Assert.assertEquals("second read is cached", 1, b.cache.getHits());
+
+		a.write(2);
+		b.sync();
+		b.deliverEvents();
+		Assert.assertEquals("external change is visible", 2, b.read());
+		Assert.assertEquals("writer's own cache is coherent", 2, a.read());
+	}
+
+	@Test
+	public void test_ReadRacingExternalChangeIsNotCached() {
+		ClusterNode a = new ClusterNode();
+		ClusterNode b = new ClusterNode();
+		a.write(1);
+		b.sync();
+		b.deliverEvents();
+
+		// b loads version 1, and the change to version 2 arrives before it caches it
+		long stamp = b.cache.getStamp(KEY);
+		long loaded = b.view.get(KEY);
+		a.write(2);
+		b.sync();
+		b.deliverEvents();
+		b.cache.put(KEY, loaded, json(loaded), stamp);
+
+		Assert.assertEquals("stale load was not cached", 2, b.read());
+	}
+
+	@Test
+	public void test_StampedChangeBeatsInvalidation() {
+		ClusterNode a = new ClusterNode();
+		ClusterNode b = new ClusterNode();
+		a.write(1);
+		b.sync();
+		b.deliverEvents();
+		Assert.assertEquals(1, b.read());
+
+		// The stamp listener has seen the change, the cache invalidation is still pending
+		a.write(2);
+		b.sync();
+		b.stamps.changed(ISBN);
+		Assert.assertEquals("cached entry with an old stamp is not served", 2, b.read());
+	}
+
+	@Test
+	public void test_RemovalOnOtherNode() {
+		ClusterNode a = new ClusterNode();
+		ClusterNode b = new ClusterNode();
+		a.write(1);
+		b.sync();
+		b.deliverEvents();
+		Assert.assertEquals(1, b.read());
+
+		a.write(0);
+		b.sync();
+		b.deliverEvents();
+		Assert.assertEquals("removed book is gone", 0, b.read());
+		Assert.assertEquals("nothing cached for a removed book", 0, b.cache.size());
+	}
+}
@@ -0,0 +1,98 @@
+package org.example.assessment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Persistence and recovery of the memory-mapped ISBN index file.
+ */
+public class IsbnNodeIndexTest {
+
+	private static final int SLOTS = 64;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void test_ReopenAfterCleanShutdown() throws IOException {
+		File file = folder.newFile();
+		String id = UUID.randomUUID().toString();
+		IsbnNodeIndex index = IsbnNodeIndex.open(file, SLOTS);
+		Assert.assertFalse("new index is cold", index.isWarm());
+		index.put(9780803736801L, id);
+		index.close();
+
+		index = IsbnNodeIndex.open(file, SLOTS);
+		Assert.assertTrue("cleanly closed index is warm", index.isWarm());
+		Assert.assertEquals("entry survives restart", id, index.get(9780803736801L));
+		index.close();
+	}
+
+	@Test
+	public void test_RebuildAfterCrash() throws IOException {
+		File file = folder.newFile();
+		IsbnNodeIndex index = IsbnNodeIndex.open(file, SLOTS);
+		index.put(9780803736801L, UUID.randomUUID().toString());
+		// Simulate a crash by releasing the file without marking it clean
+		index.close();
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			raw.seek(12);
+			raw.writeInt(0);
+		}
+
+		index = IsbnNodeIndex.open(file, SLOTS);
+		Assert.assertFalse("index is rebuilt after a crash", index.isWarm());
+		Assert.assertNull("entries are dropped", index.get(9780803736801L));
+		index.close();
+	}
+
+	@Test
+	public void test_RebuildOnCorruptSlot() throws IOException {
+		File file = folder.newFile();
+		IsbnNodeIndex index = IsbnNodeIndex.open(file, SLOTS);
+		index.put(9780803736801L, UUID.randomUUID().toString());
+		index.close();
+		// Flip a byte of the stored UUID in every used slot
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				raw.seek(32 + slot * 32);
+				if (raw.readLong() != 0) {
+					raw.seek(32 + slot * 32 + 8);
+					int b = raw.read();
+					raw.seek(32 + slot * 32 + 8);
+					raw.write(b ^ 0xFF);
+				}
+			}
+		}
+
+		index = IsbnNodeIndex.open(file, SLOTS);
+		Assert.assertFalse("index is rebuilt on a checksum failure", index.isWarm());
+		Assert.assertEquals("entries are dropped", 0, index.size());
+		index.close();
+	}
+
+	@Test
+	public void test_RemoveKeepsCollidingEntries() throws IOException {
+		IsbnNodeIndex index = IsbnNodeIndex.open(folder.newFile(), SLOTS);
+		String[] ids = new String[40];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = UUID.randomUUID().toString();
+			index.put(9780000000000L + i, ids[i]);
+		}
+		for (int i = 0; i < ids.length; i += 2) {
+			index.remove(9780000000000L + i);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			Assert.assertEquals("entry " + i, i % 2 == 0 ? null : ids[i], index.get(9780000000000L + i));
+		}
+		Assert.assertEquals("size after removals", ids.length / 2, index.size());
+		index.close();
+	}
+}
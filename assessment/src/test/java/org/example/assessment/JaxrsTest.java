@@ -2,6 +2,8 @@ package org.example.assessment;
 
 import static com.jayway.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import java.io.IOException;
 import java.util.HashMap;
 import org.apache.catalina.Context;
@@ -181,6 +183,28 @@ public class JaxrsTest extends RepositoryTestCase {
 		return response.body().asString();
 	}
 
+	/**
+	 * Performs conditional PUT request on given path
+	 * @param strPayload data to be sent in PUT request
+	 * @param ifMatch expected version ETag
+	 * @param iStatusCode status code for the request:200, 412 etc
+	 * @return response API response
+	 */
+	private String expectConditionalPut(String path, String strPayload, String ifMatch, int iStatusCode) {
+		Response response =  given()
+				.spec(spec)
+				.header("If-Match", ifMatch)
+				.when()
+				.body(strPayload)
+				.put(path)
+				.then()
+				.statusCode(iStatusCode)
+				.extract().response();
+
+
+		return response.body().asString();
+	}
+
 	/**
 	 * Searches for No books in repository
 	 * @param path path of the resource in API	
@@ -398,6 +422,190 @@ public class JaxrsTest extends RepositoryTestCase {
 		validateDeleteBooksInSystem("/books", "97806798052745", 404);
 	}
 
+	@Test
+	public void test_ListBooksWithFields() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		String response = expectGetOK("/books?fields=isbn,title", 200);
+		JsonPath jsonPath = new JsonPath(response);
+		Assert.assertEquals("projected listing size", 3, jsonPath.getList("isbn").size());
+		Assert.assertTrue("projected listing has title", jsonPath.getMap("[0]").containsKey("title"));
+		Assert.assertFalse("projected listing omits shortDescription", jsonPath.getMap("[0]").containsKey("shortDescription"));
+
+		expectGetOK("/books?fields=isbn,price", 400);
+	}
+
+	@Test
+	public void test_FindByISBNWithFields() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/9780399226908?fields=isbn,title", 200));
+		Assert.assertEquals("projected ISBN", "9780399226908", jsonPath.getString("isbn"));
+		Assert.assertNotNull("projected book has title", jsonPath.getString("title"));
+		Assert.assertNull("projected book omits author", jsonPath.getString("author"));
+
+		expectGetOK("/books/9780399226908?fields=isbn,price", 400);
+	}
+
+	@Test
+	public void test_SearchBooksWithFields() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/search?q=Dragons&fields=isbn,shortDescription", 200));
+		Assert.assertEquals("projected search result", "[9780803736801]", jsonPath.getString("isbn"));
+		Assert.assertTrue("projected result has shortDescription", jsonPath.getMap("[0]").containsKey("shortDescription"));
+		Assert.assertFalse("projected result omits title", jsonPath.getMap("[0]").containsKey("title"));
+
+		expectGetOK("/books/search?q=Dragons&fields=price", 400);
+	}
+
+	@Test
+	public void test_FindByAuthorPrefix() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		String response = expectGetOK("/books/by-author/ERIC?match=prefix&fields=isbn,author", 200);
+		JsonPath jsonPath = new JsonPath(response);
+		Assert.assertEquals("books by Eric Carle", "[9780399226908]", jsonPath.getString("isbn"));
+
+		response = expectGetOK("/books/by-author/nobody?match=prefix", 200);
+		Assert.assertEquals("books by unknown author", "[]", new JsonPath(response).getString("isbn"));
+	}
+
+	@Test
+	public void test_SuggestByTitleAndAuthor() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/suggest?prefix=drag", 200));
+		Assert.assertEquals("suggestion by title", "[9780803736801]", jsonPath.getString("isbn"));
+		Assert.assertEquals("suggestion title", "[Dragons Love Tacos]", jsonPath.getString("title"));
+
+		jsonPath = new JsonPath(expectGetOK("/books/suggest?prefix=seuss", 200));
+		Assert.assertEquals("suggestion by author surname", "[9780679805274]", jsonPath.getString("isbn"));
+	}
+
+	@Test
+	public void test_SearchSeesNewBooks() throws IOException {
+		seedBooksInSystem("/books/seed", "3 books created");
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/search?q=automation", 200));
+		Assert.assertEquals("no match before the book is added", "[]", jsonPath.getString("isbn"));
+		// A repeated search is served from the query cache, which must have been invalidated
+		addBookInSystem("/books", generateDataForRequest());
+		jsonPath = new JsonPath(expectGetOK("/books/search?q=automation", 200));
+		Assert.assertEquals("match after the book is added", "[9780399226907]", jsonPath.getString("isbn"));
+	}
+
+	@Test
+	public void test_SearchKeepsOperatorCase() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/search?q=Dragons OR Seuss", 200));
+		Assert.assertEquals("either term matches", 2, jsonPath.getList("isbn").size());
+		// Lowercase "or" is a plain term, which no book contains; must not share the cached entry
+		jsonPath = new JsonPath(expectGetOK("/books/search?q=dragons or seuss", 200));
+		Assert.assertEquals("all terms must match", "[]", jsonPath.getString("isbn"));
+	}
+
+	@Test
+	public void test_FindByISBNWithLeadingZero() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		// Fill the payload cache, which must not serve the book for a different ISBN
+		expectGetOK("/books/9780399226908", 200);
+		validateSearchBooksByIsbn("/books", "09780399226908", 404);
+		expectGetOK("/books/09780399226908?fields=isbn", 404);
+	}
+
+	@Test
+	public void test_FindByISBNAfterUpdate() throws IOException {
+		String strPayload = generateDataForRequest();
+		addBookInSystem("/books", strPayload);
+		// The first read fills the payload cache, the update must invalidate it
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/9780399226907", 200));
+		Assert.assertEquals("title before update", "Automation Testing Skills", jsonPath.getString("title"));
+		addBookInSystem("/books", strPayload.replace("Automation Testing Skills", "Advanced Automation Testing"));
+		Response response = given().spec(spec).when().get("/books/9780399226907").then().statusCode(200).extract().response();
+		Assert.assertEquals("title after update", "Advanced Automation Testing", response.jsonPath().getString("title"));
+		Assert.assertEquals("version after update", "\"2\"", response.header("ETag"));
+	}
+
+	@Test
+	public void test_ReadyAfterWarmup() throws InterruptedException {
+		// Indexes are built and caches warmed in the background after startup
+		int status = 0;
+		for (int attempt = 0; attempt < 100 && status != 200; attempt++) {
+			status = given().spec(spec).when().get("/books/ready").then().extract().statusCode();
+			if (status != 200) {
+				Assert.assertEquals("not ready yet", 503, status);
+				Thread.sleep(100);
+			}
+		}
+		Assert.assertEquals("ready after warm-up", 200, status);
+		Assert.assertEquals("ready flag", "true", new JsonPath(expectGetOK("/books/ready", 200)).getString("ready"));
+	}
+
+	@Test
+	public void test_StatsTrackHotKeys() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		expectGetOK("/books/9780803736801", 200);
+		expectGetOK("/books/9780803736801", 200);
+		expectGetOK("/books/9780000000002", 404);
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/stats", 200));
+		Assert.assertTrue("requested ISBN is a heavy hitter", jsonPath.getList("topIsbns.key").contains("9780803736801"));
+		Assert.assertTrue("unknown ISBN is tracked as a miss", jsonPath.getList("topMisses.key").contains("9780000000002"));
+	}
+
+	@Test
+	public void test_PublishedRangeWithCursor() {
+		seedBooksInSystem("/books/seed", "3 books created");
+		JsonPath first = new JsonPath(expectGetOK("/books/published?from=1990-01-01&to=1999-12-31&limit=1&fields=isbn", 200));
+		Assert.assertEquals("oldest book first", "9780679805274", first.getString("books[0].isbn"));
+		String cursor = first.getString("cursor");
+		Assert.assertNotNull("cursor to the next page", cursor);
+		JsonPath second = new JsonPath(expectGetOK("/books/published?from=1990-01-01&to=1999-12-31&limit=1&fields=isbn&cursor=" + cursor, 200));
+		Assert.assertEquals("next book in date order", "9780399226908", second.getString("books[0].isbn"));
+		Assert.assertNull("last page", second.getString("cursor"));
+		expectGetOK("/books/published?from=yesterday", 400);
+	}
+
+	@Test
+	public void test_SearchCollapsedByWork() throws IOException {
+		String strPayload = generateDataForRequest();
+		addBookInSystem("/books", strPayload);
+		addBookInSystem("/books", strPayload.replace("9780399226907", "9780399226914"));
+		JsonPath jsonPath = new JsonPath(expectGetOK("/books/search?q=automation&fields=isbn,title&collapse=work", 200));
+		Assert.assertEquals("one representative for both editions", 1, jsonPath.getList("isbn").size());
+		Assert.assertEquals("[2]", jsonPath.getString("editions"));
+		expectGetOK("/books/search?q=automation&collapse=edition", 400);
+	}
+
+	@Test
+	public void test_HealthReportsProbe() throws InterruptedException {
+		// The first probe runs right after startup
+		int status = 0;
+		for (int attempt = 0; attempt < 100 && status != 200; attempt++) {
+			status = given().spec(spec).when().get("/books/health").then().extract().statusCode();
+			if (status != 200) {
+				Thread.sleep(100);
+			}
+		}
+		Assert.assertEquals("healthy once probed", 200, status);
+		JsonPath health = new JsonPath(given().spec(spec).when().get("/books/health").then()
+				.header("Cache-Control", "no-store").extract().asString());
+		Assert.assertEquals("true", health.getString("healthy"));
+		Assert.assertNotEquals("probe has read", "0", health.getString("lastRead"));
+	}
+
+	@Test
+	public void test_RateLimitHeaders() {
+		given().spec(spec).when().get("/books/9780000000002").then().statusCode(404)
+				.header("X-RateLimit-Limit", "600").header("X-RateLimit-Remaining", notNullValue());
+		given().spec(spec).when().get("/books/ready").then().header("X-RateLimit-Limit", nullValue());
+	}
+
+	@Test
+	public void test_AddBooksVersionConflict() throws IOException {
+		String strPayload = generateDataForRequest();
+		addBookInSystem("/books", strPayload);
+		expectConditionalPut("/books", strPayload, "\"1\"", 200);
+		String response = expectConditionalPut("/books", strPayload, "\"1\"", 412);
+		log.info("test_AddBooksVersionConflict response: {}", response);
+		String etag = given().spec(spec).when().get("/books/9780399226907").then().statusCode(200).extract().header("ETag");
+		Assert.assertEquals("version after two saves", "\"2\"", etag);
+	}
+
 	@Test
 	public void test_AddBooksInSystem() throws IOException {
 		String strPayload = generateDataForRequest();		
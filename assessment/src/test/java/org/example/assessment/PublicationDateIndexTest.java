@@ -0,0 +1,84 @@
+package org.example.assessment;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Range scans and cursor pagination of the publication date index.
+ */
+public class PublicationDateIndexTest {
+
+	private static Book book(String isbn, int year, int month, int day, long version) {
+		Book book = new Book();
+		book.setISBN(isbn);
+		Calendar date = Calendar.getInstance();
+		date.clear();
+		date.set(year, month - 1, day);
+		book.setPublicationDate(date);
+		book.setVersion(version);
+		return book;
+	}
+
+	private static long day(String date) {
+		return LocalDate.parse(date).toEpochDay();
+	}
+
+	private static List<String> isbns(List<PublicationDateIndex.Key> keys) {
+		List<String> isbns = new ArrayList<>();
+		for (PublicationDateIndex.Key key : keys) {
+			isbns.add(key.getIsbn());
+		}
+		return isbns;
+	}
+
+	private static PublicationDateIndex index() {
+		PublicationDateIndex index = new PublicationDateIndex();
+		index.bookSaved(book("9780000000001", 2020, 1, 10, 1));
+		index.bookSaved(book("9780000000002", 2020, 1, 10, 1));
+		index.bookSaved(book("9780000000003", 2020, 2, 1, 1));
+		index.bookSaved(book("9780000000004", 2021, 6, 30, 1));
+		return index;
+	}
+
+	@Test
+	public void test_AscendingPages() {
+		PublicationDateIndex index = index();
+		List<PublicationDateIndex.Key> page = index.findAscending(day("2020-01-10"), day("2020-12-31"), null, 2);
+		Assert.assertEquals("[9780000000001, 9780000000002]", isbns(page).toString());
+		PublicationDateIndex.Key cursor = PublicationDateIndex.Key.parse(page.get(1).toString());
+		Assert.assertEquals("[9780000000003]",
+				isbns(index.findAscending(day("2020-01-10"), day("2020-12-31"), cursor, 2)).toString());
+	}
+
+	@Test
+	public void test_DescendingPages() {
+		PublicationDateIndex index = index();
+		List<PublicationDateIndex.Key> page = index.findDescending(Long.MIN_VALUE, day("2021-06-30"), null, 2);
+		Assert.assertEquals("[9780000000004, 9780000000003]", isbns(page).toString());
+		Assert.assertEquals("[9780000000002, 9780000000001]",
+				isbns(index.findDescending(Long.MIN_VALUE, day("2021-06-30"), page.get(1), 5)).toString());
+	}
+
+	@Test
+	public void test_CursorOutsideRange() {
+		PublicationDateIndex index = index();
+		PublicationDateIndex.Key beyond = PublicationDateIndex.Key.parse("2030-01-01_9780000000009");
+		Assert.assertTrue(index.findAscending(day("2020-01-01"), day("2020-12-31"), beyond, 5).isEmpty());
+		Assert.assertEquals(4, index.findDescending(Long.MIN_VALUE, Long.MAX_VALUE, beyond, 5).size());
+	}
+
+	@Test
+	public void test_UpdateMovesAndRemoves() {
+		PublicationDateIndex index = index();
+		index.bookSaved(book("9780000000001", 2022, 1, 1, 2));
+		index.bookSaved(book("9780000000001", 2019, 1, 1, 1));
+		index.bookRemoved("9780000000002");
+		Assert.assertEquals("[9780000000003, 9780000000004, 9780000000001]",
+				isbns(index.findAscending(Long.MIN_VALUE, Long.MAX_VALUE, null, 10)).toString());
+	}
+}
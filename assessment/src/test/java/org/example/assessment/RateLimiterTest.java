@@ -0,0 +1,75 @@
+package org.example.assessment;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Token bucket accounting and endpoint classification of the rate limiter.
+ */
+public class RateLimiterTest {
+
+	private static RateLimiter limiter(long perMinute, long burst, int maxBuckets) {
+		return new RateLimiter(Collections.singletonMap(RateLimiter.EndpointClass.READ,
+				new RateLimiter.Limit(perMinute, burst)), maxBuckets);
+	}
+
+	@Test
+	public void test_BurstThenReject() {
+		RateLimiter limiter = limiter(60, 3, 100);
+		for (int i = 2; i >= 0; i--) {
+			RateLimiter.Decision decision = limiter.acquire("ip:10.0.0.1", RateLimiter.EndpointClass.READ);
+			Assert.assertTrue("request within burst", decision.isAllowed());
+			Assert.assertEquals("remaining tokens", i, decision.getRemaining());
+		}
+		RateLimiter.Decision rejected = limiter.acquire("ip:10.0.0.1", RateLimiter.EndpointClass.READ);
+		Assert.assertFalse("request beyond burst", rejected.isAllowed());
+		Assert.assertTrue("retry after about a second", rejected.getRetryAfterSeconds() >= 1 && rejected.getRetryAfterSeconds() <= 2);
+		Assert.assertTrue("other clients are unaffected",
+				limiter.acquire("ip:10.0.0.2", RateLimiter.EndpointClass.READ).isAllowed());
+	}
+
+	@Test
+	public void test_UnlimitedClass() {
+		Assert.assertNull("no limit configured", limiter(60, 3, 100).acquire("ip:10.0.0.1", RateLimiter.EndpointClass.WRITE));
+	}
+
+	@Test
+	public void test_BucketsBounded() {
+		RateLimiter limiter = limiter(60, 3, 2);
+		limiter.acquire("ip:10.0.0.1", RateLimiter.EndpointClass.READ);
+		limiter.acquire("ip:10.0.0.2", RateLimiter.EndpointClass.READ);
+		RateLimiter.Decision third = limiter.acquire("ip:10.0.0.3", RateLimiter.EndpointClass.READ);
+		RateLimiter.Decision fourth = limiter.acquire("ip:10.0.0.4", RateLimiter.EndpointClass.READ);
+		Assert.assertEquals("buckets in use are kept, no new ones added", 2, limiter.size());
+		Assert.assertEquals("overflow bucket after the first newcomer", 2, third.getRemaining());
+		Assert.assertEquals("newcomers share the overflow bucket", 1, fourth.getRemaining());
+		Assert.assertEquals("known clients keep their bucket", 1,
+				limiter.acquire("ip:10.0.0.1", RateLimiter.EndpointClass.READ).getRemaining());
+	}
+
+	@Test
+	public void test_IdleBucketsDropped() throws InterruptedException {
+		// one token per 10 microseconds, so buckets are full again well within the sleep
+		RateLimiter limiter = limiter(6000000, 1, 2);
+		limiter.acquire("ip:10.0.0.1", RateLimiter.EndpointClass.READ);
+		limiter.acquire("ip:10.0.0.2", RateLimiter.EndpointClass.READ);
+		Thread.sleep(10);
+		RateLimiter.Decision decision = limiter.acquire("ip:10.0.0.3", RateLimiter.EndpointClass.READ);
+		Assert.assertTrue(decision.isAllowed());
+		Assert.assertEquals("idle buckets dropped to make room", 1, limiter.size());
+	}
+
+	@Test
+	public void test_Classify() {
+		Assert.assertEquals(RateLimiter.EndpointClass.LIST, RateLimitFilter.classify("GET", "/"));
+		Assert.assertEquals(RateLimiter.EndpointClass.LIST, RateLimitFilter.classify("GET", "books"));
+		Assert.assertEquals(RateLimiter.EndpointClass.READ, RateLimitFilter.classify("GET", "/9780803736801"));
+		Assert.assertEquals(RateLimiter.EndpointClass.SEARCH, RateLimitFilter.classify("GET", "search"));
+		Assert.assertEquals(RateLimiter.EndpointClass.WRITE, RateLimitFilter.classify("PUT", "/"));
+		Assert.assertEquals(RateLimiter.EndpointClass.WRITE, RateLimitFilter.classify("DELETE", "/9780803736801"));
+		Assert.assertEquals(RateLimiter.EndpointClass.WRITE, RateLimitFilter.classify("GET", "/books/seed"));
+		Assert.assertNull(RateLimitFilter.classify("GET", "/ready"));
+	}
+}
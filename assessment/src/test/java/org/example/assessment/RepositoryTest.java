@@ -1,14 +1,30 @@
 package org.example.assessment;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.PropertyIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.jackrabbit.api.observation.JackrabbitEvent;
 import org.junit.After;
 import org.junit.Test;
 import org.onehippo.repository.testutils.RepositoryTestCase;
@@ -34,6 +50,298 @@ public class RepositoryTest extends RepositoryTestCase {
         super.tearDown(); // removes /test node and checks repository clean state
     }
     
+    @Test
+    public void test_DumpAndDiff() throws RepositoryException, IOException {
+        // Outside /books, which the module maintains and may change while the test runs
+        Node books = session.getRootNode().addNode("test").addNode("books");
+        Node book = books.addNode("801").addNode("9780803736801");
+        book.setProperty("book:isbn", "9780803736801");
+        book.setProperty("book:authors", new String[] { "Eric Carle", "Bill Martin" });
+        session.save();
+
+        SubtreeDumper dumper = new SubtreeDumper();
+        StringWriter before = new StringWriter();
+        String hash = dumper.dump(books, before);
+        StringWriter again = new StringWriter();
+        assertEquals("dumps are repeatable", hash, dumper.dump(books, again));
+        assertEquals(before.toString(), again.toString());
+
+        book.setProperty("book:title", "Brown Bear, Brown Bear, What Do You See?");
+        books.addNode("908");
+        session.save();
+        StringWriter after = new StringWriter();
+        assertNotEquals("hash covers the subtree", hash, dumper.dump(books, after));
+
+        StringWriter differences = new StringWriter();
+        assertEquals(2, SubtreeDumper.diff(new StringReader(before.toString()), new StringReader(after.toString()), differences));
+        assertEquals("+\t/test/books/801/9780803736801/@book:title\n+\t/test/books/908\n", differences.toString());
+    }
+
+    @Test
+    public void test_ParallelDumpEqualsSequential() throws RepositoryException, IOException {
+        BooksModule module = BooksModule.getActive();
+        assertNotNull("books module running", module);
+        Node books = module.getBooksRoot(session);
+        for (String isbn : new String[] { "9780803736801", "9780399226908", "9780679805274", "9780399226907" }) {
+            String folderKey = Book.getFolderKey(isbn);
+            addBookNode(books.hasNode(folderKey) ? books.getNode(folderKey) : books.addNode(folderKey), isbn, isbn);
+        }
+        books.addNode("123");
+        session.save();
+
+        StringWriter sequential = new StringWriter();
+        String hash = new SubtreeDumper().dump(books, sequential);
+        StringWriter parallel = new StringWriter();
+        assertEquals("same hash", hash, module.dumpBooks(parallel));
+        assertEquals("same dump", sequential.toString(), parallel.toString());
+    }
+
+    @Test
+    public void test_WriteBehindCoalescesAndIsolatesFailures() throws RepositoryException {
+        BooksModule module = BooksModule.getActive();
+        assertNotNull("books module running", module);
+        // A shard folder that cannot hold books, so storing one in it fails
+        module.getBooksRoot(session).addNode("908", "nt:folder");
+        session.save();
+
+        // Flushed by hand only
+        WriteBehindQueue queue = new WriteBehindQueue(module, 10, 10, TimeUnit.HOURS.toMillis(1));
+        try {
+            long titled = queue.offer(Collections.singletonList(newBook("9780803736801", "Title only", null)));
+            long described = queue.offer(Arrays.asList(newBook("9780803736801", null, "Description only"),
+                    newBook("9780399226908", "Unstorable", null)));
+            long superseding = queue.offer(Collections.singletonList(newBook("9780399226908", "Still unstorable", null)));
+            Book expecting = newBook("9780679805274", "Expects version 7", null);
+            expecting.setVersion(7L);
+            long versioned = queue.offer(Collections.singletonList(expecting));
+            long unversioned = queue.offer(Collections.singletonList(newBook("9780679805274", null, "No version")));
+            assertEquals("updates of one ISBN coalesce", 3, queue.size());
+            assertEquals(WriteBehindQueue.Status.PENDING, queue.getStatus(titled));
+            assertEquals(WriteBehindQueue.Status.UNKNOWN, queue.getStatus(unversioned + 1));
+
+            queue.flush();
+            assertEquals("failed books not requeued", 0, queue.size());
+            assertEquals(WriteBehindQueue.Status.STORED, queue.getStatus(titled));
+            assertEquals("failed with the unstorable book", WriteBehindQueue.Status.FAILED, queue.getStatus(described));
+            assertEquals(WriteBehindQueue.Status.FAILED, queue.getStatus(superseding));
+            assertEquals("first expected version kept", WriteBehindQueue.Status.FAILED, queue.getStatus(versioned));
+            assertEquals("superseded receipt follows its replacement", WriteBehindQueue.Status.FAILED,
+                    queue.getStatus(unversioned));
+            session.refresh(false);
+            Node book = session.getNode("/books/801/9780803736801");
+            assertEquals("partial updates merged", "Title only", book.getProperty(Book.TITLE).getString());
+            assertEquals("Description only", book.getProperty(Book.SHORT_DESCRIPTION).getString());
+            assertEquals("stored once", 1L, book.getProperty(Book.VERSION).getLong());
+            assertTrue("nothing stored in the bad folder", !session.getNode("/books/908").hasNodes());
+            assertTrue("version conflict stored nothing", !session.nodeExists("/books/274"));
+        }
+        finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void test_MaintenanceRepairsFolders() throws RepositoryException {
+        BooksModule module = BooksModule.getActive();
+        assertNotNull("books module running", module);
+        Node books = module.getBooksRoot(session);
+        books.addNode("123");
+        addBookNode(books.addNode("801"), "9780399226908", "9780399226908");
+        addBookNode(books.addNode("908"), "9780399226907", "9780399226908");
+        session.save();
+
+        BooksMaintenance maintenance = new BooksMaintenance(module, TimeUnit.HOURS.toMillis(1), 100, 0);
+        try {
+            maintenance.run();
+            session.refresh(false);
+            assertTrue("empty folder removed", !session.nodeExists("/books/123"));
+            assertTrue("misplaced book moved", session.nodeExists("/books/908/9780399226908"));
+            assertTrue("folder left empty by the move removed", !session.nodeExists("/books/801"));
+            assertTrue("mismatched book left alone", session.nodeExists("/books/908/9780399226907"));
+            Map<String, Object> snapshot = maintenance.snapshot();
+            assertEquals(2L, snapshot.get("foldersRemoved"));
+            assertEquals(1L, snapshot.get("booksMoved"));
+            assertEquals("name/ISBN mismatch reported", 1L, snapshot.get("inconsistencies"));
+        }
+        finally {
+            maintenance.shutdown();
+        }
+    }
+
+    @Test
+    public void test_MaintenanceSkipsFailingFolder() throws RepositoryException {
+        BooksModule module = BooksModule.getActive();
+        assertNotNull("books module running", module);
+        Node books = module.getBooksRoot(session);
+        books.addNode("111");
+        books.addNode("222");
+        session.save();
+
+        BooksMaintenance maintenance = new BooksMaintenance(module, TimeUnit.HOURS.toMillis(1), 100, 0) {
+            @Override
+            void checkChild(String name) throws RepositoryException {
+                if ("111".equals(name)) {
+                    throw new RepositoryException("unreadable folder");
+                }
+                super.checkChild(name);
+            }
+        };
+        try {
+            maintenance.run();
+            session.refresh(false);
+            assertTrue("failing folder untouched", session.nodeExists("/books/111"));
+            assertTrue("later folder still checked", !session.nodeExists("/books/222"));
+            assertEquals(1L, maintenance.snapshot().get("failures"));
+            assertEquals(1L, maintenance.snapshot().get("runs"));
+        }
+        finally {
+            maintenance.shutdown();
+        }
+    }
+
+    @Test
+    public void test_ExternalEventsInvalidateCaches() throws RepositoryException {
+        BooksModule module = BooksModule.getActive();
+        assertNotNull("books module running", module);
+        String isbn = "9780803736801";
+        long key = Book.getISBNKey(isbn);
+        Node book = module.getBooksRoot(session).addNode(Book.getFolderKey(isbn)).addNode(isbn, "book:Book");
+        book.setProperty(Book.ISBN, isbn);
+        book.setProperty(Book.TITLE, "Brown Bear");
+        session.save();
+
+        ChangeStamps stamps = new ChangeStamps(1024);
+        BookPayloadCache cache = new BookPayloadCache(1024 * 1024, 64 * 1024, stamps);
+        BookChangeDispatcher dispatcher = new BookChangeDispatcher(module, session);
+        dispatcher.addListener(stamps);
+        dispatcher.addListener(cache);
+        long stamp = cache.getStamp(key);
+        cache.put(key, 1, "{\"title\":\"Brown Bear\"}".getBytes(StandardCharsets.UTF_8), stamp);
+
+        // Another cluster node changes the title; this node has synced the journal but not yet received the events
+        book.setProperty(Book.TITLE, "Brown Bear, Brown Bear, What Do You See?");
+        session.save();
+        assertNotNull("previous version served until the events arrive", cache.get(key));
+
+        dispatcher.onEvent(new ExternalEvents(Arrays.asList(
+                new ExternalEvent(Event.PROPERTY_CHANGED, book.getPath() + "/" + Book.TITLE),
+                new ExternalEvent(Event.PROPERTY_CHANGED, book.getPath() + "/" + Book.VERSION))));
+        assertEquals(2, dispatcher.getExternalEvents());
+        assertNotEquals("change stamp advanced", stamp, stamps.get(key));
+        long misses = cache.getMisses();
+        assertNull("payload cache misses after the events", cache.get(key));
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    /**
+     * Observation event as delivered for a change made by another cluster node.
+     */
+    private static class ExternalEvent implements JackrabbitEvent {
+        private final int type;
+        private final String path;
+
+        ExternalEvent(int type, String path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        @Override
+        public boolean isExternal() {
+            return true;
+        }
+
+        @Override
+        public int getType() {
+            return type;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getUserID() {
+            return "admin";
+        }
+
+        @Override
+        public String getIdentifier() {
+            return null;
+        }
+
+        @Override
+        public Map getInfo() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String getUserData() {
+            return null;
+        }
+
+        @Override
+        public long getDate() {
+            return System.currentTimeMillis();
+        }
+    }
+
+    private static class ExternalEvents implements EventIterator {
+        private final List<Event> events;
+        private final Iterator<Event> iterator;
+        private long position;
+
+        ExternalEvents(List<Event> events) {
+            this.events = events;
+            this.iterator = events.iterator();
+        }
+
+        @Override
+        public Event nextEvent() {
+            position++;
+            return iterator.next();
+        }
+
+        @Override
+        public Object next() {
+            return nextEvent();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public void skip(long skipNum) {
+            for (long i = 0; i < skipNum; i++) {
+                nextEvent();
+            }
+        }
+
+        @Override
+        public long getSize() {
+            return events.size();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+    }
+
+    private static void addBookNode(Node folder, String name, String isbn) throws RepositoryException {
+        folder.addNode(name, "book:Book").setProperty(Book.ISBN, isbn);
+    }
+
+    private static Book newBook(String isbn, String title, String shortDescription) {
+        Book book = new Book();
+        book.setISBN(isbn);
+        book.setTitle(title);
+        book.setShortDescription(shortDescription);
+        return book;
+    }
+
     @Test
 	public void test_TraverseNodewithDetails() throws RepositoryException, IOException {
 		log.info(traverseNode(session.getNode(strPath)));
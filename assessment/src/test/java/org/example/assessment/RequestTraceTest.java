@@ -0,0 +1,47 @@
+package org.example.assessment;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Phase and counter bookkeeping of request traces.
+ */
+public class RequestTraceTest {
+
+	@After
+	public void stop() {
+		RequestTrace.stop();
+	}
+
+	@Test
+	public void test_UntracedThreadIsNoOp() {
+		try (RequestTrace.Span span = RequestTrace.span(RequestTrace.LOAD)) {
+			RequestTrace.count(RequestTrace.NODES, 1);
+		}
+		Assert.assertNull(RequestTrace.current());
+	}
+
+	@Test
+	public void test_PhasesAndCounters() throws InterruptedException {
+		RequestTrace trace = RequestTrace.start("GET", "search");
+		try (RequestTrace.Span span = RequestTrace.span(RequestTrace.QUERY)) {
+			Thread.sleep(20);
+		}
+		for (int i = 0; i < 3; i++) {
+			try (RequestTrace.Span span = RequestTrace.span(RequestTrace.LOAD)) {
+				RequestTrace.count(RequestTrace.NODES, 1);
+			}
+		}
+		String line = trace.format(200);
+		Assert.assertTrue(line, line.startsWith("method=GET path=search status=200 total="));
+		Matcher phases = Pattern.compile(".* query=(\\d+)ms/1 load=\\d+ms/3 nodes=3").matcher(line);
+		Assert.assertTrue(line, phases.matches());
+		Assert.assertTrue("query phase covers the sleep: " + line, Long.parseLong(phases.group(1)) >= 20);
+		Assert.assertSame("stop returns the trace", trace, RequestTrace.stop());
+		Assert.assertNull(RequestTrace.current());
+	}
+}
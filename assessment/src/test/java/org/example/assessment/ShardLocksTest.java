@@ -0,0 +1,71 @@
+package org.example.assessment;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Striping and ordering of the per-shard write locks.
+ */
+public class ShardLocksTest {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void test_SameShardWaits() throws Exception {
+		ShardLocks locks = new ShardLocks(16);
+		CountDownLatch acquired = new CountDownLatch(1);
+		Future<?> writer;
+		try (ShardLocks.Held held = locks.lock("9780399226908")) {
+			writer = executor.submit(() -> {
+				try (ShardLocks.Held other = locks.lock(Arrays.asList("9780000000908", "9780803736801"))) {
+					acquired.countDown();
+				}
+			});
+			Assert.assertFalse("writer to the same shard waits", acquired.await(200, TimeUnit.MILLISECONDS));
+		}
+		writer.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals("writer proceeds once the shard is released", 0, acquired.getCount());
+	}
+
+	@Test
+	public void test_OtherShardProceeds() throws Exception {
+		ShardLocks locks = new ShardLocks(1024);
+		try (ShardLocks.Held held = locks.lock("9780399226908")) {
+			executor.submit(() -> locks.lock("9780803736801").close()).get(5, TimeUnit.SECONDS);
+		}
+		catch (TimeoutException e) {
+			Assert.fail("writer to another shard was blocked");
+		}
+	}
+
+	@Test
+	public void test_FolderLockExcludesBookWriters() throws Exception {
+		ShardLocks locks = new ShardLocks(16);
+		CountDownLatch acquired = new CountDownLatch(1);
+		Future<?> writer;
+		try (ShardLocks.Held held = locks.lockFolders(Arrays.asList("908", "801"))) {
+			writer = executor.submit(() -> {
+				try (ShardLocks.Held other = locks.lock("9780399226908")) {
+					acquired.countDown();
+				}
+			});
+			Assert.assertFalse("writer to a locked folder waits", acquired.await(200, TimeUnit.MILLISECONDS));
+		}
+		writer.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(0, acquired.getCount());
+	}
+}
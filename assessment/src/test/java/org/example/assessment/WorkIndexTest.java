@@ -0,0 +1,79 @@
+package org.example.assessment;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Work keys and incremental maintenance of the edition grouping.
+ */
+public class WorkIndexTest {
+
+	private static Book book(String isbn, String title, String author, int firstPublished, long version) {
+		Book book = new Book();
+		book.setISBN(isbn);
+		book.setTitle(title);
+		book.setAuthor(Arrays.asList(author));
+		book.setFirstPublicationDate(date(firstPublished));
+		book.setVersion(version);
+		return book;
+	}
+
+	private static Calendar date(int year) {
+		Calendar date = Calendar.getInstance();
+		date.clear();
+		date.set(year, Calendar.MARCH, 20);
+		return date;
+	}
+
+	@Test
+	public void test_WorkKeyIgnoresCaseAndPunctuation() {
+		Calendar date = Calendar.getInstance();
+		date.clear();
+		date.set(1969, Calendar.JUNE, 3);
+		Assert.assertEquals("the very hungry caterpillar|eric carle|1969",
+				Book.getWorkKey("The Very Hungry Caterpillar!", Arrays.asList("Eric  Carle"), date));
+		Assert.assertEquals("authors in name order", Book.getWorkKey("Title", Arrays.asList("B", "A"), null),
+				Book.getWorkKey("title", Arrays.asList("a", "b"), null));
+		Assert.assertNull("no title, no work", Book.getWorkKey(" ", Arrays.asList("A"), date));
+	}
+
+	@Test
+	public void test_FirstEditionWithoutFirstPublicationDate() {
+		Book first = book("9780399226908", "The Very Hungry Caterpillar", "Eric Carle", 1969, 1);
+		first.setFirstPublicationDate(null);
+		first.setPublicationDate(date(1969));
+		Book later = book("9780241003008", "The Very Hungry Caterpillar", "Eric Carle", 1969, 1);
+		later.setPublicationDate(date(1994));
+		WorkIndex index = new WorkIndex();
+		index.bookSaved(first);
+		index.bookSaved(later);
+		Assert.assertEquals("year of the first edition's publication", "the very hungry caterpillar|eric carle|1969", first.getWorkKey());
+		Assert.assertEquals("editions share the work", index.getWorkKey("9780399226908"), index.getWorkKey("9780241003008"));
+		Assert.assertEquals(2, index.getEditions(first.getWorkKey()).size());
+	}
+
+	@Test
+	public void test_EditionsGroupedIncrementally() {
+		WorkIndex index = new WorkIndex();
+		index.bookSaved(book("9780399226908", "The Very Hungry Caterpillar", "Eric Carle", 1969, 1));
+		index.bookSaved(book("9780241003008", "The very hungry caterpillar", "Eric Carle", 1969, 1));
+		index.bookSaved(book("9780803736801", "Dragons Love Tacos", "Adam Rubin", 2012, 1));
+		String work = index.getWorkKey("9780399226908");
+		Assert.assertEquals(work, index.getWorkKey("9780241003008"));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("9780399226908", "9780241003008")), index.getEditions(work));
+		Assert.assertEquals(2, index.size());
+
+		// Retitled edition moves to another work; a stale event is ignored
+		index.bookSaved(book("9780241003008", "The Very Hungry Caterpillar Board Book", "Eric Carle", 1969, 2));
+		index.bookSaved(book("9780241003008", "The Very Hungry Caterpillar", "Eric Carle", 1969, 1));
+		Assert.assertEquals(1, index.getEditions(work).size());
+
+		index.bookRemoved("9780399226908");
+		Assert.assertTrue("empty work dropped", index.getEditions(work).isEmpty());
+		Assert.assertEquals(2, index.size());
+	}
+}